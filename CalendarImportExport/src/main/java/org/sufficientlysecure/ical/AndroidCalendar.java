@@ -19,7 +19,9 @@
 package org.sufficientlysecure.ical;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import android.annotation.SuppressLint;
 import android.content.ContentProviderClient;
@@ -45,20 +47,31 @@ public class AndroidCalendar {
     public boolean mIsActive;
     public String mTimezone;
     public int mNumEntries;
+    private String mEventsSummary; // Changes when the events of the calendar change
 
     private static final String[] CAL_COLS = new String[] {
         Calendars._ID, Calendars.DELETED, Calendars.NAME, Calendars.CALENDAR_DISPLAY_NAME,
         Calendars.ACCOUNT_NAME, Calendars.ACCOUNT_TYPE, Calendars.OWNER_ACCOUNT,
         Calendars.VISIBLE, Calendars.CALENDAR_TIME_ZONE };
 
-    private static final String[] CAL_ID_COLS = new String[] { Events._ID };
-    private static final String CAL_ID_WHERE = Events.CALENDAR_ID + "=?";
+    // Summarise the events of a calendar without reading them: their number, and
+    // the largest and the sum of their ids. The ids change when events are added,
+    // removed or moved between calendars, even if the number stays the same. The
+    // provider has no GROUP BY argument and checks the selection, so each
+    // calendar is summarised with its own query, and its projection map only
+    // passes through expressions with an alias. Providers that reject this are
+    // handled by SUMMARY_FALLBACK_COLS.
+    private static final String[] SUMMARY_COLS = new String[] {
+        "COUNT(*) AS num_events", "MAX(" + Events._ID + ") AS max_id",
+        "SUM(" + Events._ID + ") AS id_sum" };
+    private static final String SUMMARY_WHERE = Events.CALENDAR_ID + " = ?";
+    private static final String[] SUMMARY_FALLBACK_COLS = new String[] {
+        Events.CALENDAR_ID, Events._ID };
 
     // Load all available calendars.
     // If an empty list is returned the caller probably needs to enable calendar
     // read permissions in App Ops/XPrivacy etc.
     public static List<AndroidCalendar> loadAll(ContentResolver resolver) {
-
         if (missing(resolver, Calendars.CONTENT_URI) || missing(resolver, Events.CONTENT_URI))
             return new ArrayList<>();
 
@@ -70,47 +83,88 @@ public class AndroidCalendar {
             cur = resolver.query(Calendars.CONTENT_URI, null, null, null, null);
         }
         List<AndroidCalendar> calendars = new ArrayList<>(cur.getCount());
-
-        while (cur.moveToNext()) {
-            if (getLong(cur, Calendars.DELETED) != 0)
+        RowReader row = new RowReader(cur);
+        while (row.moveToNext()) {
+            if (row.getLong(Calendars.DELETED) != 0)
                 continue;
 
             AndroidCalendar calendar = new AndroidCalendar();
-            calendar.mId = getLong(cur, Calendars._ID);
+            calendar.mId = row.getLong(Calendars._ID);
             if (calendar.mId == -1)
                 continue;
-            calendar.mIdStr = getString(cur, Calendars._ID);
-            calendar.mName = getString(cur, Calendars.NAME);
-            calendar.mDisplayName = getString(cur, Calendars.CALENDAR_DISPLAY_NAME);
-            calendar.mAccountName = getString(cur, Calendars.ACCOUNT_NAME);
-            calendar.mAccountType = getString(cur, Calendars.ACCOUNT_TYPE);
-            calendar.mOwner = getString(cur, Calendars.OWNER_ACCOUNT);
-            calendar.mIsActive = getLong(cur, Calendars.VISIBLE) == 1;
-            calendar.mTimezone = getString(cur, Calendars.CALENDAR_TIME_ZONE);
-
-            final String[] args = new String[] { calendar.mIdStr };
-            Cursor eventsCur = resolver.query(Events.CONTENT_URI, CAL_ID_COLS, CAL_ID_WHERE, args, null);
-            calendar.mNumEntries = eventsCur.getCount();
-            eventsCur.close();
+            calendar.mIdStr = row.getString(Calendars._ID);
+            calendar.mName = row.getString(Calendars.NAME);
+            calendar.mDisplayName = row.getString(Calendars.CALENDAR_DISPLAY_NAME);
+            calendar.mAccountName = row.getString(Calendars.ACCOUNT_NAME);
+            calendar.mAccountType = row.getString(Calendars.ACCOUNT_TYPE);
+            calendar.mOwner = row.getString(Calendars.OWNER_ACCOUNT);
+            calendar.mIsActive = row.getLong(Calendars.VISIBLE) == 1;
+            calendar.mTimezone = row.getString(Calendars.CALENDAR_TIME_ZONE);
             calendars.add(calendar);
         }
-        cur.close();
+        row.close();
 
+        if (!loadSummaries(resolver, calendars))
+            scanSummaries(resolver, calendars);
         return calendars;
     }
 
-    private static int getColumnIndex(Cursor cur, String dbName) {
-        return dbName == null ? -1 : cur.getColumnIndex(dbName);
+    // Summarise the events of each calendar with SUMMARY_COLS, returning false
+    // if the provider rejects the query
+    private static boolean loadSummaries(ContentResolver resolver,
+                                         List<AndroidCalendar> calendars) {
+        for (AndroidCalendar calendar: calendars) {
+            Cursor cur;
+            try {
+                cur = resolver.query(Events.CONTENT_URI, SUMMARY_COLS, SUMMARY_WHERE,
+                                     new String[] { calendar.mIdStr }, null);
+            } catch (Exception except) {
+                Log.w(TAG, "Calendar provider rejected event summary, reading events instead");
+                return false;
+            }
+            if (cur == null)
+                return false;
+            final boolean ok = cur.getColumnCount() == SUMMARY_COLS.length && cur.moveToFirst();
+            if (ok)
+                calendar.setSummary(cur.getInt(0), cur.getLong(1), cur.getLong(2));
+            cur.close();
+            if (!ok)
+                return false;
+        }
+        return true;
     }
 
-    private static long getLong(Cursor cur, String dbName) {
-        int i = getColumnIndex(cur, dbName);
-        return i == -1 ? -1 : cur.getLong(i);
+    // Summarise the events of each calendar from a single query over all events
+    private static void scanSummaries(ContentResolver resolver,
+                                      List<AndroidCalendar> calendars) {
+        Map<Long, long[]> summaries = new HashMap<>(); // Count, max id and id sum
+        Cursor cur = resolver.query(Events.CONTENT_URI, SUMMARY_FALLBACK_COLS, null, null, null);
+        if (cur != null) {
+            while (cur.moveToNext()) {
+                long[] summary = summaries.get(cur.getLong(0));
+                if (summary == null) {
+                    summary = new long[3];
+                    summaries.put(cur.getLong(0), summary);
+                }
+                final long id = cur.getLong(1);
+                summary[0]++;
+                summary[1] = Math.max(summary[1], id);
+                summary[2] += id;
+            }
+            cur.close();
+        }
+        for (AndroidCalendar calendar: calendars) {
+            long[] summary = summaries.get(calendar.mId);
+            if (summary == null)
+                calendar.setSummary(0, 0, 0);
+            else
+                calendar.setSummary((int) summary[0], summary[1], summary[2]);
+        }
     }
 
-    private static String getString(Cursor cur, String dbName) {
-        int i = getColumnIndex(cur, dbName);
-        return i == -1 ? null : cur.getString(i);
+    private void setSummary(int numEntries, long maxId, long idSum) {
+        mNumEntries = numEntries;
+        mEventsSummary = numEntries + ":" + maxId + ":" + idSum;
     }
 
     private static boolean missing(ContentResolver resolver, Uri uri) {
@@ -136,6 +190,7 @@ public class AndroidCalendar {
         return mId != other.mId ||
                mIsActive != other.mIsActive ||
                mNumEntries != other.mNumEntries ||
+               differ(mEventsSummary, other.mEventsSummary) ||
                differ(mName, other.mName) ||
                differ(mDisplayName, other.mDisplayName) ||
                differ(mAccountName, other.mAccountName) ||
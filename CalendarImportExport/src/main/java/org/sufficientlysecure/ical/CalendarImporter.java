@@ -0,0 +1,751 @@
+/**
+ *  Copyright (C) 2015  Jon Griffiths (jon_p_griffiths@yahoo.com)
+ *  Copyright (C) 2013  Dominik Schürmann <dominik@dominikschuermann.de>
+ *  Copyright (C) 2010-2011  Lukas Aichbauer
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.sufficientlysecure.ical;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.Property;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import org.sufficientlysecure.ical.ui.RemindersDialog;
+import org.sufficientlysecure.ical.util.Log;
+import org.sufficientlysecure.ical.util.TaskScheduler;
+
+import android.annotation.SuppressLint;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.provider.CalendarContractWrapper;
+import android.provider.CalendarContractWrapper.Events;
+import android.provider.CalendarContractWrapper.Reminders;
+import android.text.TextUtils;
+
+// Inserts or deletes parsed events in a calendar, handling duplicates according
+// to the settings. It has no UI so that it can be used both when importing
+// interactively and when syncing subscriptions in the background.
+@SuppressLint("NewApi")
+public class CalendarImporter {
+    private static final String TAG = "ICS_CalendarImporter";
+
+    // Columns that EventConverter.toValues() may leave out, and so must be cleared when
+    // updating an event that has them
+    private static final String[] CLEARABLE_COLS = new String[] {
+        Events.TITLE, Events.DESCRIPTION, Events.ORGANIZER, Events.EVENT_LOCATION,
+        Events.STATUS, Events.DURATION, Events.DTEND, Events.EVENT_END_TIMEZONE,
+        Events.RRULE, Events.RDATE, Events.EXRULE, Events.EXDATE, Events.CUSTOM_APP_URI
+    };
+
+    // Columns that determine when an event occurs. These are always updated
+    // together, so that the calendar can recalculate the event's instances.
+    private static final List<String> TIME_COLS = Arrays.asList(
+        Events.DTSTART, Events.DTEND, Events.DURATION, Events.ALL_DAY, Events.EVENT_TIMEZONE,
+        Events.EVENT_END_TIMEZONE, Events.RRULE, Events.RDATE, Events.EXRULE, Events.EXDATE);
+
+    private static final String[] REMINDER_COLS = new String[] {
+        Reminders._ID, Reminders.MINUTES, Reminders.METHOD
+    };
+
+    // How many converted events may wait to be written
+    private static final int PIPELINE_SIZE = 256;
+
+    private final ContentResolver mResolver;
+    private final ProviderEventStore mStore;
+    private final EventConverter mConverter;
+    private final Options mOptions;
+    private final AndroidCalendar mCalendar;
+    private final boolean mIsInserter;
+    private final UidGenerator mUids;
+    private final int mBatchEvents;
+    private final ContentValues mAlarm = new ContentValues();
+    private Settings.DuplicateHandlingEnum mDupes;
+    private ImportManifest mManifest;
+    private boolean mRemoveMissing;
+
+    // State shared while processing the events of a run
+    private DuplicateIndex mIndex;
+    private int mNumDel;
+    private int mNumIns;
+    private int mNumUpdated;
+    private int mNumDups;
+    private int mNumUnchanged;
+    private int mNumRemoved;
+
+    // The UIDs of the imported events, to find the events removed from the source
+    private final Set<String> mImportedUids = new HashSet<>();
+
+    // Events waiting to be inserted as a single batch
+    private final List<PendingEvent> mPending = new ArrayList<>();
+
+    private final class Options extends Settings {
+        private final List<Integer> mDefaultReminders;
+
+        public Options(Settings settings) {
+            super(settings.getPreferences());
+            mDefaultReminders = RemindersDialog.getSavedRemindersInMinutes(this);
+        }
+
+        public List<Integer> getReminders(List<Integer> eventReminders) {
+            if (eventReminders.size() > 0 && getImportReminders())
+                return eventReminders;
+            return mDefaultReminders;
+        }
+
+        public int getBatchEvents() {
+            switch (getBatchSize()) {
+                case BATCH_500:
+                    return 500;
+                case BATCH_20:
+                    return 20;
+                case BATCH_1:
+                    return 1;
+            }
+            return 100;
+        }
+    }
+
+    // An event to insert along with the reminder times to insert for it
+    private static final class PendingEvent {
+        private final ContentValues mValues;
+        private final List<Integer> mReminders;
+        private DuplicateIndex.Entry mEntry;
+        private String mUid; // Recorded in the manifest once inserted
+        private String mDigest;
+
+        public PendingEvent(ContentValues values, List<Integer> reminders) {
+            mValues = values;
+            mReminders = new ArrayList<>(reminders);
+        }
+    }
+
+    // An event converted to the values to write, along with its reminder times
+    private static final class ConvertedEvent {
+        private final VEvent mEvent;
+        private final ContentValues mValues;
+        private final List<Integer> mReminders;
+        private final String mDigest; // Only calculated when using a manifest
+
+        public ConvertedEvent(VEvent event, ContentValues values, List<Integer> reminders,
+                              String digest) {
+            mEvent = event;
+            mValues = values;
+            mReminders = reminders;
+            mDigest = digest;
+        }
+    }
+
+    // Reads events, such as by parsing a calendar file
+    public interface EventSource {
+        void read(StreamingCalendarBuilder.EventHandler handler) throws Exception;
+    }
+
+    public CalendarImporter(ContentResolver resolver, Settings settings,
+                            AndroidCalendar calendar, boolean isInserter) {
+        mResolver = resolver;
+        mOptions = new Options(settings);
+        mCalendar = calendar;
+        mStore = new ProviderEventStore(resolver, calendar, false);
+        mConverter = new EventConverter(TimeZoneCache.getInstance());
+        mIsInserter = isInserter;
+        mUids = UidGenerator.getInstance(settings);
+        mBatchEvents = mOptions.getBatchEvents();
+        mDupes = mOptions.getDuplicateHandling();
+        mAlarm.put(Reminders.METHOD, Reminders.METHOD_ALERT);
+    }
+
+    // Use a different duplicate handling to the settings. Must be called before begin().
+    public void setDuplicateHandling(Settings.DuplicateHandlingEnum dupes) {
+        mDupes = dupes;
+    }
+
+    // Only write the events that have changed since the import recorded in the
+    // manifest. Must be called before begin().
+    public void setManifest(ImportManifest manifest) {
+        mManifest = manifest;
+    }
+
+    // Also delete the events in the manifest that are no longer in the source.
+    // Only use this for sources that are always the same calendar, such as a
+    // subscribed URL; a local file name is often reused for unrelated files.
+    public void setRemoveMissing(boolean removeMissing) {
+        mRemoveMissing = removeMissing;
+    }
+
+    public Settings.DuplicateHandlingEnum getDuplicateHandling() {
+        return mDupes;
+    }
+
+    public int getNumInserted() {
+        return mNumIns;
+    }
+
+    // The number of existing events that were updated in place
+    public int getNumUpdated() {
+        return mNumUpdated;
+    }
+
+    public int getNumDeleted() {
+        return mNumDel;
+    }
+
+    public int getNumDuplicates() {
+        return mNumDups;
+    }
+
+    // The number of events skipped because they haven't changed
+    public int getNumUnchanged() {
+        return mNumUnchanged;
+    }
+
+    // The number of events deleted because they were removed from the source
+    public int getNumRemoved() {
+        return mNumRemoved;
+    }
+
+    // Prepare to process events
+    public void begin() {
+        mNumDel = 0;
+        mNumIns = 0;
+        mNumUpdated = 0;
+        mNumDups = 0;
+        mNumUnchanged = 0;
+        mNumRemoved = 0;
+        mImportedUids.clear();
+
+        Log.i(TAG, (mIsInserter ? "Insert" : "Delete") + " for id " + mCalendar.mIdStr);
+        Log.d(TAG, "Duplication option is " + mDupes.ordinal());
+        Log.d(TAG, "Batching up to " + mBatchEvents + " events");
+
+        mIndex = null;
+        if (!mIsInserter || mDupes != Settings.DuplicateHandlingEnum.DUP_DONT_CHECK) {
+            // Load the existing events once rather than querying for each event
+            mIndex = mStore.loadDuplicateIndex(mOptions.getKeepUids(), mOptions.getGlobalUids());
+        }
+
+        if (mManifest != null && (mIndex == null || !mIndex.usesUids())) {
+            Log.d(TAG, "Not using UIDs, so importing every event");
+            mManifest = null;
+        }
+    }
+
+    // Insert the events waiting to be inserted. This should be called even if
+    // processing fails or is cancelled, since their duplicates may already have
+    // been deleted. Events removed from the source since the last import are
+    // only deleted if every event was processed.
+    public void finish(boolean complete) {
+        mNumIns += insertPending(mResolver, mIndex);
+        if (mManifest == null)
+            return;
+        if (complete && mIsInserter && mRemoveMissing)
+            removeMissingEvents();
+        mManifest.save();
+    }
+
+    private void removeMissingEvents() {
+        ContentValues c = new ContentValues();
+        c.put(Events.CALENDAR_ID, mCalendar.mId);
+        for (String uid: mManifest.getUids()) {
+            if (mImportedUids.contains(uid))
+                continue;
+            c.put(Events.UID_2445, uid);
+            for (DuplicateIndex.Entry entry: new ArrayList<>(mIndex.find(ProviderEventStore.asRow(c)))) {
+                if (entry.mCalendarId == mCalendar.mId && entry.mId != DuplicateIndex.NO_ID) {
+                    Log.i(TAG, "Removing event " + entry.mId + " that is no longer in the source");
+                    mNumRemoved += deleteEvent(entry);
+                }
+            }
+            mManifest.remove(uid);
+        }
+    }
+
+    private int deleteEvent(DuplicateIndex.Entry entry) {
+        String id = Long.toString(entry.mId);
+        Uri eventUri = Uri.withAppendedPath(Events.CONTENT_URI, id);
+        int numDel = mResolver.delete(eventUri, null, null);
+        String where = Reminders.EVENT_ID + "=?";
+        mResolver.delete(Reminders.CONTENT_URI, where, new String[] { id });
+        mIndex.remove(entry);
+        return numDel;
+    }
+
+    // Update an existing event to the given values, writing only the columns
+    // and reminders that differ. Returns false if the event couldn't be updated,
+    // in which case it should be replaced instead.
+    private boolean updateEvent(long id, ContentValues c, List<Integer> reminders) {
+        ContentValues changes = new ContentValues(c);
+        changes.remove(Events.CALENDAR_ID); // Leave the event in its calendar
+        for (String col: CLEARABLE_COLS)
+            if (col != null && !changes.containsKey(col))
+                changes.putNull(col);
+        if (!changes.containsKey(Events.ALL_DAY))
+            changes.put(Events.ALL_DAY, 0);
+        if (!changes.containsKey(Events.HAS_ALARM))
+            changes.put(Events.HAS_ALARM, 0);
+
+        List<String> cols = new ArrayList<>();
+        for (Map.Entry<String, Object> value: changes.valueSet())
+            cols.add(value.getKey());
+
+        Uri uri = ContentUris.withAppendedId(Events.CONTENT_URI, id);
+        try {
+            Cursor cur = mResolver.query(uri, cols.toArray(new String[cols.size()]),
+                                         null, null, null);
+            if (cur == null)
+                return false;
+            try {
+                if (!cur.moveToFirst())
+                    return false;
+                boolean timeChanged = false;
+                List<String> unchanged = new ArrayList<>();
+                for (int i = 0; i < cols.size(); i++) {
+                    final String col = cols.get(i);
+                    Object value = changes.get(col);
+                    if (TextUtils.equals(value == null ? null : value.toString(), cur.getString(i)))
+                        unchanged.add(col);
+                    else if (TIME_COLS.contains(col))
+                        timeChanged = true;
+                }
+                for (String col: unchanged)
+                    if (!timeChanged || !TIME_COLS.contains(col))
+                        changes.remove(col);
+            } finally {
+                cur.close();
+            }
+
+            if (changes.size() > 0) {
+                if (Log.getIsUserEnabled())
+                    Log.d(TAG, "Updating event " + id + " values: " + changes);
+                if (mResolver.update(uri, changes, null, null) == 0)
+                    return false;
+            }
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Failed to update event " + id + ", replacing it", e);
+            return false;
+        }
+
+        updateReminders(id, reminders);
+        return true;
+    }
+
+    // Make an event's reminders match the given reminder times, keeping the
+    // existing reminders that already match
+    private void updateReminders(long id, List<Integer> reminders) {
+        List<Integer> missing = new ArrayList<>(reminders);
+        List<String> unwanted = new ArrayList<>();
+        String where = Reminders.EVENT_ID + "=?";
+        String[] args = new String[] { Long.toString(id) };
+        Cursor cur = mResolver.query(Reminders.CONTENT_URI, REMINDER_COLS, where, args, null);
+        if (cur != null) {
+            while (cur.moveToNext()) {
+                if (cur.getInt(2) == Reminders.METHOD_ALERT && missing.remove((Integer) cur.getInt(1)))
+                    continue;
+                unwanted.add(Long.toString(cur.getLong(0)));
+            }
+            cur.close();
+        }
+
+        if (!unwanted.isEmpty()) {
+            where = Reminders._ID + " IN (" + TextUtils.join(",", unwanted) + ")";
+            mResolver.delete(Reminders.CONTENT_URI, where, null);
+        }
+        for (int time: missing) {
+            mAlarm.put(Reminders.EVENT_ID, id);
+            mAlarm.put(Reminders.MINUTES, time);
+            ProviderEventStore.insertAndLog(mResolver, Reminders.CONTENT_URI, mAlarm, "Reminder");
+        }
+    }
+
+    // A digest of everything that would be written for an event
+    private static String getDigest(ContentValues c, List<Integer> reminders) {
+        List<String> values = new ArrayList<>();
+        for (Map.Entry<String, Object> value: c.valueSet())
+            values.add(value.getKey() + "=" + value.getValue());
+        Collections.sort(values);
+        return DigestUtils.md5Hex(TextUtils.join("\n", values) + "\n" + reminders);
+    }
+
+    // Whether an event is already in the calendar being imported to. With global
+    // UIDs, the index also finds events with the same UID in other calendars.
+    private boolean isInCalendar(EventRow row) {
+        for (DuplicateIndex.Entry entry: mIndex.find(row))
+            if (entry.mCalendarId == mCalendar.mId)
+                return true;
+        return false;
+    }
+
+    // Import or delete an event
+    public void process(VEvent e) {
+        ConvertedEvent event = convert(e);
+        if (event != null)
+            write(event);
+    }
+
+    // Import or delete the events read from a source, as process() would.
+    //
+    // The events are read and converted on the CPU pool while the calling thread
+    // writes them to the calendar, so that conversion overlaps with writing.
+    // Events are written in the order they were read. Conversion is not split
+    // between several threads because ical4j's timezones are not thread safe,
+    // and the parser uses them too.
+    public void processAll(final EventSource source) throws Exception {
+        final StreamingCalendarBuilder.EventHandler serial;
+        serial = new StreamingCalendarBuilder.EventHandler() {
+            public void onEvent(VEvent e) {
+                process(e);
+            }
+        };
+        if (mOptions.getTestFileSupport()) {
+            // Test events are checked against the source event as they are written
+            source.read(serial);
+            return;
+        }
+
+        final Thread writer = Thread.currentThread();
+        final EventPipeline<ConvertedEvent> pipeline = new EventPipeline<>(PIPELINE_SIZE);
+        Callable<Void> reader = new Callable<Void>() {
+            public Void call() throws Exception {
+                try {
+                    if (Thread.currentThread() == writer) {
+                        // The CPU pool was busy, so the writer is running this itself
+                        source.read(serial);
+                        return null;
+                    }
+                    source.read(new StreamingCalendarBuilder.EventHandler() {
+                        public void onEvent(VEvent e) throws InterruptedException {
+                            ConvertedEvent event = convert(e);
+                            if (event != null)
+                                pipeline.put(event);
+                        }
+                    });
+                } finally {
+                    pipeline.finish();
+                }
+                return null;
+            }
+        };
+
+        Future<Void> future;
+        future = TaskScheduler.getInstance().submit(TaskScheduler.Pool.CPU, TAG, reader);
+        try {
+            ConvertedEvent event;
+            while ((event = pipeline.take()) != null)
+                write(event);
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Keep the task marked as cancelled
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            throw (Error) cause;
+        } finally {
+            // Stop reading if writing failed. Closing first releases the reader
+            // if it is waiting for space, so it can't wait forever.
+            pipeline.close();
+            future.cancel(true);
+        }
+    }
+
+    // Convert an event to the values to write. This only reads the options,
+    // so it may run on a different thread to write().
+    private ConvertedEvent convert(VEvent e) {
+        if (Log.getIsUserEnabled())
+            Log.d(TAG, "source event: " + e.toString());
+
+        List<Integer> reminders = new ArrayList<>();
+        EventValues values = mConverter.toValues(e, reminders);
+        if (values == null)
+            return null;
+        ContentValues c = ProviderEventStore.toContentValues(values);
+        c.put(Events.CALENDAR_ID, mCalendar.mId);
+        if (mOptions.getReminders(reminders).size() > 0)
+            c.put(Events.HAS_ALARM, 1);
+
+        String digest = null;
+        if (mManifest != null && mIsInserter && c.containsKey(Events.UID_2445))
+            digest = getDigest(c, mOptions.getReminders(reminders));
+        return new ConvertedEvent(e, c, reminders, digest);
+    }
+
+    // Write a converted event to the calendar
+    private void write(ConvertedEvent event) {
+        final ContentValues c = event.mValues;
+        final EventRow row = ProviderEventStore.asRow(c);
+        final List<Integer> reminders = mOptions.getReminders(event.mReminders);
+        long insertCalendarId = mCalendar.mId; // Calendar id to insert to
+
+        String uid = null;
+        String digest = null;
+        if (mManifest != null && c.containsKey(Events.UID_2445)) {
+            uid = c.getAsString(Events.UID_2445);
+            if (!mIsInserter) {
+                mManifest.remove(uid);
+            } else {
+                mImportedUids.add(uid);
+                digest = event.mDigest;
+                if (digest.equals(mManifest.get(uid)) && isInCalendar(row)) {
+                    Log.d(TAG, "Skipping unchanged event " + uid);
+                    mNumUnchanged++;
+                    return;
+                }
+            }
+        }
+
+        List<DuplicateIndex.Entry> found = null;
+        boolean mustDelete = !mIsInserter;
+
+        // Determine if we need to delete a duplicate event in order to update it
+        if (!mustDelete && mIndex != null) {
+
+            found = mIndex.find(row);
+            for (DuplicateIndex.Entry entry: found) {
+                if (mDupes == Settings.DuplicateHandlingEnum.DUP_REPLACE)
+                    mustDelete = entry.mCalendarId == mCalendar.mId;
+                else
+                    mustDelete = true; // Replacing all (or ignoring, handled just below)
+                if (mustDelete)
+                    break;
+            }
+
+            if (mustDelete && mDupes == Settings.DuplicateHandlingEnum.DUP_IGNORE) {
+                Log.i(TAG, "Avoiding inserting a duplicate event");
+                mNumDups++;
+                return;
+            }
+        }
+
+        // Update a duplicate in place rather than replacing it, which keeps its
+        // id and only writes the columns that have changed
+        final boolean canUpdate = mIsInserter && !mOptions.getTestFileSupport();
+        DuplicateIndex.Entry updated = null;
+
+        if (mustDelete) {
+            if (found == null)
+                found = mIndex.find(row);
+
+            for (DuplicateIndex.Entry entry: found) {
+                long rowCalendarId = entry.mCalendarId;
+
+                if (mDupes == Settings.DuplicateHandlingEnum.DUP_REPLACE
+                    && rowCalendarId != mCalendar.mId) {
+                    Log.i(TAG, "Avoiding deleting duplicate event in calendar " + rowCalendarId);
+                    continue; // Not in the destination calendar
+                }
+
+                if (entry.mId == DuplicateIndex.NO_ID) {
+                    // The duplicate is waiting to be inserted, insert it so we can delete it
+                    mNumIns += insertPending(mResolver, mIndex);
+                    if (entry.mId == DuplicateIndex.NO_ID)
+                        continue; // Failed to insert, so nothing to delete
+                }
+
+                if (canUpdate && updated == null && updateEvent(entry.mId, c, reminders)) {
+                    // Its start time or title may have changed
+                    updated = mIndex.update(entry, row);
+                    continue;
+                }
+
+                mNumDel += deleteEvent(entry);
+                if (mIsInserter && rowCalendarId != mCalendar.mId
+                    && mDupes == Settings.DuplicateHandlingEnum.DUP_REPLACE_ANY) {
+                    // Must update this event in the calendar this row came from
+                    Log.i(TAG, "Changing calendar: " + rowCalendarId + " to " + insertCalendarId);
+                    insertCalendarId = rowCalendarId;
+                }
+            }
+        }
+
+        if (!mIsInserter)
+            return;
+
+        if (updated != null) {
+            mNumUpdated++;
+            if (digest != null)
+                mManifest.put(uid, digest);
+            return;
+        }
+
+        if (Events.UID_2445 != null && !c.containsKey(Events.UID_2445)) {
+            // Create a UID for this event to use. We create it here so if
+            // exported multiple times it will always have the same id.
+            c.put(Events.UID_2445, mUids.generate());
+        }
+
+        c.put(Events.CALENDAR_ID, insertCalendarId);
+        if (mOptions.getTestFileSupport()) {
+            processEventTests(event.mEvent, c, event.mReminders);
+            mNumIns++;
+            return;
+        }
+
+        PendingEvent pending = new PendingEvent(c, reminders);
+        if (mIndex != null)
+            pending.mEntry = mIndex.add(DuplicateIndex.NO_ID, row);
+        pending.mUid = uid;
+        pending.mDigest = digest;
+
+        if (mBatchEvents <= 1) {
+            if (insertEvent(mIndex, pending))
+                mNumIns++;
+            return;
+        }
+
+        mPending.add(pending);
+        if (mPending.size() >= mBatchEvents)
+            mNumIns += insertPending(mResolver, mIndex);
+    }
+
+    private boolean insertEvent(DuplicateIndex index, PendingEvent pending) {
+        final long id = mStore.insert(pending.mValues, pending.mReminders);
+        if (id == -1) {
+            if (pending.mEntry != null)
+                index.remove(pending.mEntry);
+            return false;
+        }
+        if (pending.mEntry != null)
+            pending.mEntry.mId = id;
+        onInserted(pending);
+        return true;
+    }
+
+    // Record an inserted event in the manifest, so that it is skipped next time
+    // if it hasn't changed
+    private void onInserted(PendingEvent pending) {
+        if (pending.mDigest != null)
+            mManifest.put(pending.mUid, pending.mDigest);
+    }
+
+    // Insert all pending events and their reminders in a single transaction,
+    // falling back to inserting them one by one if the batch fails.
+    private int insertPending(ContentResolver resolver, DuplicateIndex index) {
+        if (mPending.isEmpty())
+            return 0;
+
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        int[] eventIndices = new int[mPending.size()];
+        for (int i = 0; i < mPending.size(); i++) {
+            final PendingEvent pending = mPending.get(i);
+            final int eventIndex = ops.size();
+            eventIndices[i] = eventIndex;
+            ops.add(ContentProviderOperation.newInsert(Events.CONTENT_URI)
+                                            .withValues(pending.mValues).build());
+            for (int time: pending.mReminders) {
+                ops.add(ContentProviderOperation.newInsert(Reminders.CONTENT_URI)
+                                                .withValueBackReference(Reminders.EVENT_ID, eventIndex)
+                                                .withValue(Reminders.MINUTES, time)
+                                                .withValue(Reminders.METHOD, Reminders.METHOD_ALERT)
+                                                .build());
+            }
+        }
+
+        int numIns = 0;
+        try {
+            Log.d(TAG, "Applying batch of " + ops.size() + " operations");
+            ContentProviderResult[] results;
+            results = resolver.applyBatch(CalendarContractWrapper.AUTHORITY, ops);
+            numIns = mPending.size(); // The batch is applied atomically
+            for (int i = 0; i < mPending.size(); i++) {
+                final PendingEvent pending = mPending.get(i);
+                if (pending.mEntry != null)
+                    pending.mEntry.mId = ContentUris.parseId(results[eventIndices[i]].uri);
+                onInserted(pending);
+            }
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.w(TAG, "Batch insert failed, inserting events individually", e);
+            for (PendingEvent pending: mPending)
+                if (insertEvent(index, pending))
+                    numIns++;
+        }
+
+        mPending.clear();
+        return numIns;
+    }
+
+    private void checkTestValue(VEvent e, ContentValues c, String keyValue, String testName) {
+        String[] parts = keyValue.split("=");
+        String key = parts[0];
+        String expected = parts.length > 1 ? parts[1] : "";
+        String got = c.getAsString(key);
+
+        if (expected.equals("<non-null>") && got != null)
+            got = "<non-null>"; // Sentinel for testing present and non-null
+        if (got == null)
+            got = "<null>"; // Sentinel for testing not present values
+
+        if (!expected.equals(got)) {
+            Log.e(TAG, "    " + keyValue + " -> FAILED");
+            Log.e(TAG, "    values: " + c);
+            String error = "Test " + testName + " FAILED, expected '" + keyValue + "', got '" + got + "'";
+            throw new RuntimeException(error);
+        }
+        Log.i(TAG, "    " + keyValue + " -> PASSED");
+    }
+
+    private void processEventTests(VEvent e, ContentValues c, List<Integer> reminders) {
+
+        Property testName = e.getProperty("X-TEST-NAME");
+        if (testName == null)
+            return; // Not a test case
+
+        // This is a test event. Verify it using the embedded meta data.
+        Log.i(TAG, "Processing test case " + testName.getValue() + "...");
+
+        String reminderValues = "";
+        String sep = "";
+        for (Integer i : reminders) {
+            reminderValues += sep + i;
+            sep = ",";
+        }
+        c.put("reminders", reminderValues);
+
+        for (Object o : e.getProperties()) {
+            Property p = (Property) o;
+            switch (p.getName()) {
+                case "X-TEST-VALUE":
+                    checkTestValue(e, c, p.getValue(), testName.getValue());
+                    break;
+                case "X-TEST-MIN-VERSION":
+                    final int ver = Integer.parseInt(p.getValue());
+                    if (android.os.Build.VERSION.SDK_INT < ver) {
+                        Log.e(TAG, "    -> SKIPPED (MIN-VERSION < " + ver + ")");
+                        return;
+                    }
+                break;
+            }
+        }
+    }
+}
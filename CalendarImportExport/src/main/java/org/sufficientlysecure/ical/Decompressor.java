@@ -0,0 +1,102 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.sufficientlysecure.ical.util.Log;
+
+// Reads calendars that have been compressed, either for transfer over HTTP
+// or as gzip or zip files.
+public final class Decompressor {
+    private static final String TAG = "ICS_Decompressor";
+
+    // The encodings that decode() supports, for an Accept-Encoding header
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private Decompressor() {
+    }
+
+    // Decode a stream sent with the given HTTP Content-Encoding
+    public static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+        if (contentEncoding == null)
+            return in;
+        String encoding = contentEncoding.trim().toLowerCase(Locale.US);
+        if (encoding.equals("gzip") || encoding.equals("x-gzip"))
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        if (encoding.equals("deflate"))
+            return inflate(in);
+        return in;
+    }
+
+    // Decompress a stream if it starts with a gzip or zip header, otherwise return
+    // its contents unchanged. Only the first calendar in a zip file is read.
+    public static InputStream open(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(4);
+        int b0 = buffered.read();
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        int b3 = buffered.read();
+        buffered.reset();
+
+        if (b0 == 0x1f && b1 == 0x8b)
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+
+        if (b0 == 'P' && b1 == 'K' && b2 == 3 && b3 == 4) {
+            ZipInputStream zip = new ZipInputStream(buffered);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory() && isCalendarName(entry.getName())) {
+                    Log.i(TAG, "Reading " + entry.getName() + " from zip file");
+                    return zip;
+                }
+            }
+            zip.close();
+            throw new IOException("No calendar found in zip file");
+        }
+        return buffered;
+    }
+
+    private static boolean isCalendarName(String name) {
+        String lower = name.toLowerCase(Locale.US);
+        return lower.endsWith(".ics") || lower.endsWith(".ical") || lower.endsWith(".icalendar");
+    }
+
+    private static InputStream inflate(InputStream in) throws IOException {
+        // "deflate" should be zlib wrapped, but some servers send raw deflate data.
+        // A zlib stream starts with a header whose first two bytes are a multiple of 31.
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int b0 = buffered.read();
+        int b1 = buffered.read();
+        buffered.reset();
+        boolean zlib = (b0 & 0x0f) == 8 && b1 != -1 && ((b0 << 8) | b1) % 31 == 0;
+        return new InflaterInputStream(buffered, new Inflater(!zlib), BUFFER_SIZE);
+    }
+}
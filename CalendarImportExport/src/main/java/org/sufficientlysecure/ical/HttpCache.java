@@ -0,0 +1,387 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import org.sufficientlysecure.ical.util.Log;
+
+// An on-disk cache of HTTP responses keyed by URL and user name. Cached
+// responses are revalidated with a conditional GET and read from disk if not
+// modified. Only responses with an ETag or Last-Modified header are cached.
+// Compressed transfer encodings are requested, and are decoded when read so
+// that responses are stored compressed.
+//
+// Several caches may share a directory and be used from any thread: each
+// response is downloaded to its own temporary file, and entries are only
+// replaced or removed while holding a lock shared by every cache.
+public class HttpCache {
+    private static final String TAG = "ICS_HttpCache";
+
+    private static final String HTTP_SEP = "://";
+
+    private static final String BODY = ".body";
+    private static final String META = ".meta";
+    private static final String TEMP = ".tmp";
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+
+    // Remove the least recently used responses when the cache grows beyond this
+    private static final long MAX_SIZE = 100 * 1024 * 1024;
+    // Remove temporary files left behind by a crash once they are this old
+    private static final long STALE_TEMP_MS = 24 * 60 * 60 * 1000;
+
+    private final File mDir;
+
+    public HttpCache(File dir) {
+        mDir = dir;
+    }
+
+    // Open a connection to a URL, logging in if a username is given
+    public static URLConnection openConnection(URL url, String username,
+                                               String password) throws IOException {
+        if (username != null) {
+            String protocol = url.getProtocol();
+            String userPass = username + ":" + password;
+
+            if (protocol.equalsIgnoreCase("ftp") || protocol.equalsIgnoreCase("ftps")) {
+                String external = url.toExternalForm();
+                String end = external.substring(protocol.length() + HTTP_SEP.length());
+                return new URL(protocol + HTTP_SEP + userPass + "@" + end).openConnection();
+            }
+
+            if (protocol.equalsIgnoreCase("http") || protocol.equalsIgnoreCase("https")) {
+                String encoded = new String(new Base64().encode(userPass.getBytes("UTF-8")));
+                URLConnection connection = url.openConnection();
+                connection.setRequestProperty("Authorization", "Basic " + encoded);
+                return connection;
+            }
+        }
+        return url.openConnection();
+    }
+
+    // Open a connection that has not yet been connected, using the cache for HTTP.
+    // The user name the connection logs in with, if any, must be given so that
+    // users don't share cached responses.
+    public InputStream open(URLConnection connection, String username) throws IOException {
+        if (!(connection instanceof HttpURLConnection))
+            return connection.getInputStream();
+
+        HttpURLConnection http = (HttpURLConnection) connection;
+        http.setRequestProperty("Accept-Encoding", Decompressor.ACCEPT_ENCODING);
+        if (!mDir.isDirectory() && !mDir.mkdirs())
+            return decode(http.getInputStream(), http.getContentEncoding());
+
+        // Keep the request headers, including any login, in case a cached body
+        // is removed after being revalidated and has to be fetched again
+        final Map<String, List<String>> request = new HashMap<>(http.getRequestProperties());
+
+        String url = http.getURL().toString();
+        final String key = DigestUtils.md5Hex(username == null ? url : url + "\n" + username);
+        final File body = new File(mDir, key + BODY);
+        final File meta = new File(mDir, key + META);
+
+        Properties validators = new Properties();
+        if (body.exists() && meta.exists()) {
+            try {
+                load(validators, meta);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to read cache entry, ignoring it");
+                validators.clear();
+            }
+        }
+
+        String etag = validators.getProperty(ETAG);
+        String lastModified = validators.getProperty(LAST_MODIFIED);
+        if (etag != null)
+            http.setRequestProperty("If-None-Match", etag);
+        if (lastModified != null)
+            http.setRequestProperty("If-Modified-Since", lastModified);
+
+        final int code = http.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && !validators.isEmpty()) {
+            http.disconnect();
+            InputStream cached = openBody(body);
+            if (cached != null) {
+                Log.i(TAG, "Not modified, using cached copy of " + http.getURL());
+                return decode(cached, validators.getProperty(CONTENT_ENCODING));
+            }
+            // Another download removed it, so fetch it without validators
+            Log.i(TAG, "Cached copy of " + http.getURL() + " was removed, fetching it again");
+            return open(reopen(http.getURL(), request), username);
+        }
+
+        InputStream in = http.getInputStream(); // Throws for error responses
+        final String encoding = http.getContentEncoding();
+        if (code != HttpURLConnection.HTTP_OK)
+            return decode(in, encoding);
+
+        Properties newValidators = new Properties();
+        if (http.getHeaderField(ETAG) != null)
+            newValidators.setProperty(ETAG, http.getHeaderField(ETAG));
+        if (http.getHeaderField(LAST_MODIFIED) != null)
+            newValidators.setProperty(LAST_MODIFIED, http.getHeaderField(LAST_MODIFIED));
+        if (newValidators.isEmpty()) {
+            // The response can't be revalidated, so there is no point keeping it
+            body.delete();
+            meta.delete();
+            return decode(in, encoding);
+        }
+        if (encoding != null)
+            newValidators.setProperty(CONTENT_ENCODING, encoding);
+
+        // Save the body as it is read, and commit it once it has been read fully
+        final CachingInputStream caching;
+        File temp = null;
+        try {
+            temp = File.createTempFile(key, TEMP, mDir);
+            caching = new CachingInputStream(in, temp, body, meta, newValidators);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to create cache entry: " + e.getMessage());
+            if (temp != null)
+                temp.delete();
+            return decode(in, encoding);
+        }
+        if (encoding == null)
+            return caching;
+        // A decoder may stop reading just before the end of the response, so read
+        // the rest of it once all of the decoded data has been read.
+        return new FilterInputStream(decode(caching, encoding)) {
+            @Override
+            public int read() throws IOException {
+                int c = super.read();
+                if (c == -1)
+                    caching.drain();
+                return c;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                int n = super.read(buffer, offset, count);
+                if (n == -1)
+                    caching.drain();
+                return n;
+            }
+        };
+    }
+
+    // Open a cached body, or return null if it has been removed. Entries are
+    // only removed while holding the lock, and an open body can still be read
+    // after it is removed.
+    private static InputStream openBody(File body) {
+        synchronized (HttpCache.class) {
+            try {
+                InputStream in = new FileInputStream(body);
+                body.setLastModified(System.currentTimeMillis()); // Mark as recently used
+                return in;
+            } catch (FileNotFoundException e) {
+                return null;
+            }
+        }
+    }
+
+    private static URLConnection reopen(URL url, Map<String, List<String>> request)
+        throws IOException {
+        URLConnection connection = url.openConnection();
+        for (Map.Entry<String, List<String>> header: request.entrySet())
+            for (String value: header.getValue())
+                connection.addRequestProperty(header.getKey(), value);
+        return connection;
+    }
+
+    private void commit(File temp, File body, File meta, Properties validators) {
+        synchronized (HttpCache.class) {
+            commitLocked(temp, body, meta, validators);
+        }
+    }
+
+    private void commitLocked(File temp, File body, File meta, Properties validators) {
+        try {
+            meta.delete();
+            if (!temp.renameTo(body)) {
+                body.delete();
+                if (!temp.renameTo(body))
+                    throw new IOException("Failed to rename " + temp);
+            }
+            OutputStream out = new FileOutputStream(meta);
+            try {
+                validators.store(out, null);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save cache entry: " + e.getMessage());
+            temp.delete();
+            body.delete();
+            meta.delete();
+            return;
+        }
+        trim();
+    }
+
+    // Remove the least recently used entries until the cache is small enough
+    private void trim() {
+        File[] bodies = mDir.listFiles();
+        if (bodies == null)
+            return;
+        final long staleMs = System.currentTimeMillis() - STALE_TEMP_MS;
+        long size = 0;
+        for (File f: bodies) {
+            if (f.getName().endsWith(TEMP) && f.lastModified() < staleMs && f.delete())
+                continue;
+            size += f.length();
+        }
+        if (size <= MAX_SIZE)
+            return;
+
+        Arrays.sort(bodies, new Comparator<File>() {
+            public int compare(File lhs, File rhs) {
+                return Long.valueOf(lhs.lastModified()).compareTo(rhs.lastModified());
+            }
+        });
+        for (File f: bodies) {
+            if (size <= MAX_SIZE)
+                break;
+            String name = f.getName();
+            if (!name.endsWith(BODY))
+                continue;
+            size -= f.length();
+            f.delete();
+            new File(mDir, name.substring(0, name.length() - BODY.length()) + META).delete();
+        }
+    }
+
+    private static InputStream decode(InputStream in, String encoding) throws IOException {
+        try {
+            return Decompressor.decode(in, encoding);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static void load(Properties properties, File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private final class CachingInputStream extends FilterInputStream {
+        private final File mTemp;
+        private final File mBody;
+        private final File mMeta;
+        private final Properties mValidators;
+        private OutputStream mOut;
+
+        public CachingInputStream(InputStream in, File temp, File body, File meta,
+                                  Properties validators) throws IOException {
+            super(in);
+            mTemp = temp;
+            mBody = body;
+            mMeta = meta;
+            mValidators = validators;
+            mOut = new FileOutputStream(temp);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c == -1)
+                finish();
+            else if (mOut != null)
+                mOut.write(c);
+            return c;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int n = super.read(buffer, offset, count);
+            if (n == -1)
+                finish();
+            else if (mOut != null)
+                mOut.write(buffer, offset, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            abandon(); // Skipped data can't be cached
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            abandon(); // Does nothing if the whole response was read
+            super.close();
+        }
+
+        // Read and save the rest of the response
+        public void drain() throws IOException {
+            byte[] buffer = new byte[1024];
+            while (mOut != null)
+                read(buffer, 0, buffer.length); // Finishes at the end of the response
+        }
+
+        private void finish() throws IOException {
+            if (mOut == null)
+                return;
+            mOut.close();
+            mOut = null;
+            commit(mTemp, mBody, mMeta, mValidators);
+        }
+
+        private void abandon() {
+            if (mOut == null)
+                return;
+            try {
+                mOut.close();
+            } catch (IOException ignored) {
+            }
+            mOut = null;
+            mTemp.delete();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import org.sufficientlysecure.ical.util.Log;
+
+import android.content.Context;
+
+// The UIDs of the events last imported from a source into a calendar, along
+// with a digest of each event. Importing the same source again only needs to
+// write the events whose digest has changed, and can remove the events that
+// are no longer in the source.
+public class ImportManifest {
+    private static final String TAG = "ICS_ImportManifest";
+
+    private final File mFile;
+    private final Properties mDigests = new Properties();
+    private boolean mModified;
+
+    private ImportManifest(File file) {
+        mFile = file;
+    }
+
+    public static ImportManifest load(Context context, String source, long calendarId) {
+        ImportManifest manifest = new ImportManifest(getFile(context, source, calendarId));
+        if (!manifest.mFile.exists())
+            return manifest;
+        try {
+            InputStream in = new FileInputStream(manifest.mFile);
+            try {
+                manifest.mDigests.load(in);
+            } finally {
+                in.close();
+            }
+            Log.d(TAG, "Loaded " + manifest.mDigests.size() + " digests for " + source);
+        } catch (IOException e) {
+            // Everything will be imported again, which is slow but correct
+            Log.w(TAG, "Failed to read " + manifest.mFile + ", ignoring it");
+            manifest.mDigests.clear();
+        }
+        return manifest;
+    }
+
+    // Forget the events imported from a source into a calendar
+    public static void delete(Context context, String source, long calendarId) {
+        getFile(context, source, calendarId).delete();
+    }
+
+    private static File getFile(Context context, String source, long calendarId) {
+        File dir = new File(context.getFilesDir(), "manifests");
+        return new File(dir, DigestUtils.md5Hex(source) + "-" + calendarId);
+    }
+
+    public String get(String uid) {
+        return mDigests.getProperty(uid);
+    }
+
+    public void put(String uid, String digest) {
+        if (!digest.equals(mDigests.setProperty(uid, digest)))
+            mModified = true;
+    }
+
+    public void remove(String uid) {
+        if (mDigests.remove(uid) != null)
+            mModified = true;
+    }
+
+    public List<String> getUids() {
+        List<String> uids = new ArrayList<>(mDigests.size());
+        for (Object uid: mDigests.keySet())
+            uids.add((String) uid);
+        return uids;
+    }
+
+    public void save() {
+        if (!mModified)
+            return;
+        File dir = mFile.getParentFile();
+        File temp = new File(dir, mFile.getName() + ".tmp");
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs())
+                throw new IOException("Failed to create " + dir);
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                mDigests.store(out, null);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(mFile))
+                throw new IOException("Failed to rename " + temp);
+            mModified = false;
+        } catch (IOException e) {
+            // The next import will write some events that it didn't need to
+            Log.w(TAG, "Failed to save " + mFile + ": " + e.getMessage());
+            temp.delete();
+        }
+    }
+}
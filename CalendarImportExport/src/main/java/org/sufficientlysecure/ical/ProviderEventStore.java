@@ -0,0 +1,344 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sufficientlysecure.ical.util.Log;
+
+import android.annotation.SuppressLint;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CalendarContractWrapper.Events;
+import android.provider.CalendarContractWrapper.Reminders;
+
+// The events of a calendar in the Android calendar provider. Rows are read and
+// written by their EventColumns names, which are translated to the names the
+// platform uses; columns the platform doesn't have are dropped.
+@SuppressLint("NewApi")
+public final class ProviderEventStore implements EventStore {
+    private static final String TAG = "ICS_ProviderEventStore";
+
+    private static final String[] EVENT_COLS = new String[] {
+        Events._ID, Events.ORIGINAL_ID, Events.UID_2445, Events.TITLE, Events.DESCRIPTION,
+        Events.ORGANIZER, Events.EVENT_LOCATION, Events.STATUS, Events.ALL_DAY, Events.RDATE,
+        Events.RRULE, Events.DTSTART, Events.EVENT_TIMEZONE, Events.DURATION, Events.DTEND,
+        Events.EVENT_END_TIMEZONE, Events.ACCESS_LEVEL, Events.AVAILABILITY, Events.EXDATE,
+        Events.EXRULE, Events.CUSTOM_APP_PACKAGE, Events.CUSTOM_APP_URI, Events.HAS_ALARM
+    };
+
+    private static final String[] REMINDER_COLS = new String[] {
+        Reminders.EVENT_ID, Reminders.MINUTES, Reminders.METHOD
+    };
+
+    // Selects the reminders of every event in a calendar
+    private static final String CALENDAR_REMINDERS_WHERE = Reminders.EVENT_ID + " IN (SELECT "
+        + Events._ID + " FROM Events WHERE " + Events.CALENDAR_ID + "=?)";
+
+    // Columns whose names differ by platform version, mapped to null where missing
+    private static final Map<String, String> COLUMNS = new HashMap<>();
+    static {
+        COLUMNS.put(EventColumns.ORIGINAL_ID, Events.ORIGINAL_ID);
+        COLUMNS.put(EventColumns.UID_2445, Events.UID_2445);
+        COLUMNS.put(EventColumns.EVENT_END_TIMEZONE, Events.EVENT_END_TIMEZONE);
+        COLUMNS.put(EventColumns.ACCESS_LEVEL, Events.ACCESS_LEVEL);
+        COLUMNS.put(EventColumns.AVAILABILITY, Events.AVAILABILITY);
+        COLUMNS.put(EventColumns.CUSTOM_APP_PACKAGE, Events.CUSTOM_APP_PACKAGE);
+        COLUMNS.put(EventColumns.CUSTOM_APP_URI, Events.CUSTOM_APP_URI);
+    }
+
+    private final ContentResolver mResolver;
+    private final AndroidCalendar mCalendar;
+    private final boolean mAllCols;
+
+    public ProviderEventStore(ContentResolver resolver, AndroidCalendar calendar, boolean allCols) {
+        mResolver = resolver;
+        mCalendar = calendar;
+        mAllCols = allCols;
+    }
+
+    // The provider's name for a column, or null if the platform doesn't have it
+    public static String getColumn(String column) {
+        return COLUMNS.containsKey(column) ? COLUMNS.get(column) : column;
+    }
+
+    public static ContentValues toContentValues(EventValues values) {
+        ContentValues c = new ContentValues();
+        for (Map.Entry<String, Object> value: values.valueSet()) {
+            String column = getColumn(value.getKey());
+            if (column == null)
+                continue;
+            Object v = value.getValue();
+            if (v instanceof Integer)
+                c.put(column, (Integer) v);
+            else if (v instanceof Long)
+                c.put(column, (Long) v);
+            else
+                c.put(column, (String) v);
+        }
+        return c;
+    }
+
+    // Read content values by EventColumns names
+    public static EventRow asRow(ContentValues c) {
+        return new ValuesRow(c);
+    }
+
+    // Load the events that imports into the calendar could duplicate. When UIDs
+    // are global, events in every calendar are considered.
+    public DuplicateIndex loadDuplicateIndex(boolean useUids, boolean globalUids) {
+        useUids &= Events.UID_2445 != null;
+        DuplicateIndex index = new DuplicateIndex(useUids, globalUids);
+
+        List<String> cols = new ArrayList<>();
+        cols.add(Events.CALENDAR_ID);
+        cols.add(Events._ID);
+        cols.add(Events.DTSTART);
+        cols.add(Events.TITLE);
+        if (useUids)
+            cols.add(Events.UID_2445);
+
+        String where = null;
+        String[] args = null;
+        if (!useUids || !globalUids) {
+            where = Events.CALENDAR_ID + "=?";
+            args = new String[] { mCalendar.mIdStr };
+        }
+
+        Cursor cur = mResolver.query(Events.CONTENT_URI, cols.toArray(new String[cols.size()]),
+                                     where, args, null);
+        if (cur == null)
+            return index;
+
+        while (cur.moveToNext()) {
+            Long start = cur.isNull(2) ? null : cur.getLong(2);
+            String uid = useUids ? cur.getString(4) : null;
+            index.add(cur.getLong(0), cur.getLong(1), uid, start, cur.getString(3));
+        }
+        cur.close();
+        Log.d(TAG, "Indexed " + index.size() + " existing events");
+        return index;
+    }
+
+    public void readEvents(Visitor visitor) throws Exception {
+        String where = Events.CALENDAR_ID + "=?";
+        String[] args = new String[] { mCalendar.mIdStr };
+        String sortBy = Events._ID + " ASC"; // Must match the order of the reminders
+        Cursor cur;
+        try {
+            cur = mResolver.query(Events.CONTENT_URI, mAllCols ? null : EVENT_COLS,
+                                  where, args, sortBy);
+        } catch (Exception except) {
+            Log.w(TAG, "Calendar provider is missing columns, continuing anyway");
+            for (int n = 0; n < EVENT_COLS.length; ++n)
+                if (EVENT_COLS[n] == null)
+                    Log.e(TAG, "Invalid EVENT_COLS index " + n);
+            cur = mResolver.query(Events.CONTENT_URI, null, where, args, sortBy);
+        }
+        if (cur == null)
+            return;
+
+        RowReader events = new RowReader(cur);
+        RowReader reminders = queryReminders();
+        try {
+            visitor.onStart(cur.getCount());
+            while (events.moveToNext()) {
+                Row event = new Row(events);
+                visitor.onEvent(event, readReminders(event, reminders));
+            }
+        } finally {
+            events.close();
+            if (reminders != null)
+                reminders.close();
+        }
+    }
+
+    public long insertEvent(EventValues event, List<Integer> reminders) {
+        ContentValues c = toContentValues(event);
+        c.put(Events.CALENDAR_ID, mCalendar.mId);
+        return insert(c, reminders);
+    }
+
+    // Insert an event and its alert reminders, returning its id or -1 on failure
+    public long insert(ContentValues c, List<Integer> reminders) {
+        Uri uri = insertAndLog(mResolver, Events.CONTENT_URI, c, "Event");
+        if (uri == null)
+            return -1;
+
+        final long id = Long.parseLong(uri.getLastPathSegment());
+        ContentValues alarm = new ContentValues();
+        alarm.put(Reminders.METHOD, Reminders.METHOD_ALERT);
+        for (int time: reminders) {
+            alarm.put(Reminders.EVENT_ID, id);
+            alarm.put(Reminders.MINUTES, time);
+            insertAndLog(mResolver, Reminders.CONTENT_URI, alarm, "Reminder");
+        }
+        return id;
+    }
+
+    public static Uri insertAndLog(ContentResolver resolver, Uri uri, ContentValues c, String type) {
+        if (Log.getIsUserEnabled())
+            Log.d(TAG, "Inserting " + type + " values: " + c);
+        Uri result = resolver.insert(uri, c);
+        if (result == null) {
+            Log.e(TAG, "failed to insert " + type);
+            if (!Log.getIsUserEnabled())
+                Log.e(TAG, "failed " + type + " values: " + c); // Not already logged, dump now
+        }
+        else
+            Log.d(TAG,  "Insert " + type + " returned " + result.toString());
+        return result;
+    }
+
+    // Query the reminders of all events in the calendar at once, sorted by event
+    // so they can be read alongside the events instead of querying once per event.
+    private RowReader queryReminders() {
+        String[] args = new String[] { mCalendar.mIdStr };
+        String sortBy = Reminders.EVENT_ID + " ASC";
+        Cursor cur;
+        try {
+            cur = mResolver.query(Reminders.CONTENT_URI, mAllCols ? null : REMINDER_COLS,
+                                  CALENDAR_REMINDERS_WHERE, args, sortBy);
+        } catch (Exception except) {
+            Log.w(TAG, "Failed to query all reminders, querying them for each event instead");
+            return null;
+        }
+        return cur == null ? null : new RowReader(cur);
+    }
+
+    // Copy the reminders of an event, if it has any. reminders holds the reminders
+    // of the calendar, or is null to query them for the event.
+    private List<EventRow> readReminders(Row event, RowReader reminders) {
+        if (event.getInt(EventColumns.HAS_ALARM) != 1)
+            return Collections.emptyList();
+
+        List<EventRow> result = new ArrayList<>();
+        long eventId = event.getLong(EventColumns._ID);
+        if (reminders != null) {
+            if (seekReminders(reminders, eventId)) {
+                do {
+                    result.add(new Row(reminders.snapshot()));
+                } while (reminders.moveToNext()
+                         && reminders.getLong(Reminders.EVENT_ID) == eventId);
+            }
+        } else {
+            RowReader alarms;
+            alarms = new RowReader(Reminders.query(mResolver, eventId,
+                                                   mAllCols ? null : REMINDER_COLS));
+            while (alarms.moveToNext())
+                result.add(new Row(alarms.snapshot()));
+            alarms.close();
+        }
+        return result;
+    }
+
+    // Move reminders to the first reminder of the given event, returning false if
+    // it has none. Events must be visited in increasing id order.
+    private static boolean seekReminders(RowReader reminders, long eventId) {
+        Cursor cur = reminders.getCursor();
+        if (cur.isBeforeFirst() && !cur.moveToNext())
+            return false;
+        while (!cur.isAfterLast() && reminders.getLong(Reminders.EVENT_ID) < eventId)
+            cur.moveToNext();
+        return !cur.isAfterLast() && reminders.getLong(Reminders.EVENT_ID) == eventId;
+    }
+
+    // Reads content values by EventColumns names
+    private static final class ValuesRow implements EventRow {
+        private final ContentValues mValues;
+
+        ValuesRow(ContentValues values) {
+            mValues = values;
+        }
+
+        public boolean isNull(String column) {
+            column = getColumn(column);
+            return column == null || mValues.get(column) == null;
+        }
+
+        public String getString(String column) {
+            column = getColumn(column);
+            return column == null ? null : mValues.getAsString(column);
+        }
+
+        public long getLong(String column) {
+            column = getColumn(column);
+            Long value = column == null ? null : mValues.getAsLong(column);
+            return value == null ? -1 : value;
+        }
+
+        public int getInt(String column) {
+            return (int) getLong(column);
+        }
+
+        public EventRow snapshot() {
+            return new ValuesRow(new ContentValues(mValues));
+        }
+
+        @Override
+        public String toString() {
+            return mValues.toString();
+        }
+    }
+
+    // Reads a provider row by EventColumns names
+    private static final class Row implements EventRow {
+        private final RowReader mRow;
+
+        Row(RowReader row) {
+            mRow = row;
+        }
+
+        private static String getReadColumn(String column) {
+            if (column.equals(EventColumns.EVENT_END_TIMEZONE) && Events.EVENT_END_TIMEZONE == null)
+                return Events.EVENT_TIMEZONE; // Older platforms only have one timezone
+            return getColumn(column);
+        }
+
+        public boolean isNull(String column) {
+            return mRow.isNull(getReadColumn(column));
+        }
+
+        public String getString(String column) {
+            return mRow.getString(getReadColumn(column));
+        }
+
+        public long getLong(String column) {
+            return mRow.getLong(getReadColumn(column));
+        }
+
+        public int getInt(String column) {
+            return mRow.getInt(getReadColumn(column));
+        }
+
+        public EventRow snapshot() {
+            return mRow.getCursor() == null ? this : new Row(mRow.snapshot());
+        }
+
+        @Override
+        public String toString() {
+            return mRow.toString();
+        }
+    }
+}
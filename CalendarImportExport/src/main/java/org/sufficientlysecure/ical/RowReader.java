@@ -0,0 +1,154 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.text.TextUtils;
+
+// Reads values from the rows of a cursor by column name. The index of each
+// column is looked up in the cursor once and reused for every row, since
+// Cursor.getColumnIndex() searches the column names.
+//
+// Columns that the cursor doesn't have, for example because the query fell
+// back to a different projection, or whose name is null because the platform
+// doesn't support them, read as null or -1.
+//
+// snapshot() copies the current row into a reader that doesn't need the
+// cursor, so the row can be read later or on another thread.
+public final class RowReader {
+    private final Cursor mCursor;
+    private final Map<String, Integer> mIndices;
+    private final String[] mValues; // The values of a snapshot
+    private Map<String, Integer> mSnapshotIndices;
+
+    public RowReader(Cursor cursor) {
+        mCursor = cursor;
+        mIndices = new HashMap<>();
+        mValues = null;
+    }
+
+    private RowReader(Map<String, Integer> indices, String[] values) {
+        mCursor = null;
+        mIndices = indices;
+        mValues = values;
+    }
+
+    // The cursor being read, or null for a snapshot
+    public Cursor getCursor() {
+        return mCursor;
+    }
+
+    public boolean moveToNext() {
+        return mCursor.moveToNext();
+    }
+
+    public void close() {
+        mCursor.close();
+    }
+
+    // Copy the current row. The values are read as strings, as SQLite converts
+    // them, and the copy can be read from any thread.
+    public RowReader snapshot() {
+        if (mSnapshotIndices == null) {
+            // Shared by every snapshot, so must not change once created. Names
+            // match ignoring case, as they do for Cursor.getColumnIndex().
+            Map<String, Integer> indices = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            String[] names = mCursor.getColumnNames();
+            for (int i = names.length - 1; i >= 0; i--)
+                indices.put(names[i], i); // The first column of each name wins
+            mSnapshotIndices = Collections.unmodifiableMap(indices);
+        }
+        String[] values = new String[mCursor.getColumnCount()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = mCursor.getString(i);
+        return new RowReader(mSnapshotIndices, values);
+    }
+
+    // The index of a column, or -1 if the cursor doesn't have it
+    public int getIndex(String dbName) {
+        if (dbName == null)
+            return -1;
+        Integer i = mIndices.get(dbName);
+        if (i == null) {
+            if (mCursor == null)
+                return -1;
+            i = mCursor.getColumnIndex(dbName);
+            mIndices.put(dbName, i);
+        }
+        return i;
+    }
+
+    public boolean isNull(String dbName) {
+        int i = getIndex(dbName);
+        if (i == -1)
+            return true;
+        return mCursor == null ? mValues[i] == null : mCursor.isNull(i);
+    }
+
+    public String getString(String dbName) {
+        int i = getIndex(dbName);
+        if (i == -1)
+            return null;
+        return mCursor == null ? mValues[i] : mCursor.getString(i);
+    }
+
+    public long getLong(String dbName) {
+        int i = getIndex(dbName);
+        if (i == -1)
+            return -1;
+        return mCursor == null ? parseLong(mValues[i]) : mCursor.getLong(i);
+    }
+
+    public int getInt(String dbName) {
+        int i = getIndex(dbName);
+        if (i == -1)
+            return -1;
+        return mCursor == null ? (int) parseLong(mValues[i]) : mCursor.getInt(i);
+    }
+
+    public boolean hasStringValue(String dbName) {
+        return !TextUtils.isEmpty(getString(dbName));
+    }
+
+    @Override
+    public String toString() {
+        if (mCursor != null)
+            return DatabaseUtils.dumpCurrentRowToString(mCursor);
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, Integer> e: mIndices.entrySet())
+            sb.append(' ').append(e.getKey()).append('=').append(mValues[e.getValue()]);
+        return sb.append(" }").toString();
+    }
+
+    // Convert a value as Cursor.getLong() does, where null or text reads as 0
+    private static long parseLong(String value) {
+        if (value == null)
+            return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
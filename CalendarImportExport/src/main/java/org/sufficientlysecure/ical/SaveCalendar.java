@@ -22,98 +22,93 @@ package org.sufficientlysecure.ical;
 import java.io.IOException;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.net.URISyntaxException;
-import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import net.fortuna.ical4j.data.CalendarOutputter;
-import net.fortuna.ical4j.model.Calendar;
-import net.fortuna.ical4j.model.component.VAlarm;
 import net.fortuna.ical4j.model.component.VEvent;
-import net.fortuna.ical4j.model.Date;
 import net.fortuna.ical4j.model.DateTime;
-import net.fortuna.ical4j.model.Dur;
-import net.fortuna.ical4j.model.parameter.FbType;
-import net.fortuna.ical4j.model.property.Action;
 import net.fortuna.ical4j.model.property.CalScale;
-import net.fortuna.ical4j.model.property.Description;
-import net.fortuna.ical4j.model.property.DtEnd;
 import net.fortuna.ical4j.model.property.DtStamp;
-import net.fortuna.ical4j.model.property.DtStart;
-import net.fortuna.ical4j.model.property.Duration;
-import net.fortuna.ical4j.model.property.FreeBusy;
 import net.fortuna.ical4j.model.property.Method;
-import net.fortuna.ical4j.model.property.Organizer;
 import net.fortuna.ical4j.model.property.ProdId;
-import net.fortuna.ical4j.model.property.Transp;
 import net.fortuna.ical4j.model.property.Version;
 import net.fortuna.ical4j.model.property.XProperty;
-import net.fortuna.ical4j.model.Period;
-import net.fortuna.ical4j.model.Property;
-import net.fortuna.ical4j.model.PropertyFactoryImpl;
 import net.fortuna.ical4j.model.PropertyList;
-import net.fortuna.ical4j.model.TimeZone;
-import net.fortuna.ical4j.model.TimeZoneRegistry;
-import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
+import net.fortuna.ical4j.model.ValidationException;
 import net.fortuna.ical4j.util.CompatibilityHints;
 
 import org.sufficientlysecure.ical.ui.MainActivity;
 import org.sufficientlysecure.ical.ui.dialogs.RunnableWithProgress;
 import org.sufficientlysecure.ical.util.Log;
+import org.sufficientlysecure.ical.util.TaskScheduler;
 
 import android.annotation.SuppressLint;
 import android.app.AlertDialog;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.DialogInterface;
+import android.content.OperationApplicationException;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Environment;
-import android.provider.CalendarContract;
+import android.os.RemoteException;
+import android.provider.CalendarContractWrapper;
 import android.provider.CalendarContractWrapper.Events;
-import android.provider.CalendarContractWrapper.Reminders;
-import android.text.format.DateUtils;
 import android.text.TextUtils;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.EditText;
-import android.database.DatabaseUtils;
 
 @SuppressLint("NewApi")
 public class SaveCalendar extends RunnableWithProgress {
     private static final String TAG = "ICS_SaveCalendar";
 
-    private final PropertyFactoryImpl mPropertyFactory = PropertyFactoryImpl.getInstance();
-    private TimeZoneRegistry mTzRegistry;
-    private final Set<TimeZone> mInsertedTimeZones = new HashSet<>();
-    private final Set<String> mFailedOrganisers = new HashSet<>();
+    private TimeZoneCache mTimeZones;
+    private EventConverter mConverter;
+    private final Set<TimeZoneCache.Entry> mInsertedTimeZones = new HashSet<>();
     boolean mAllCols;
 
-    private static final List<String> STATUS_ENUM = Arrays.asList("TENTATIVE", "CONFIRMED", "CANCELLED");
-    private static final List<String> CLASS_ENUM = Arrays.asList(null, "CONFIDENTIAL", "PRIVATE", "PUBLIC");
-    private static final List<String> AVAIL_ENUM = Arrays.asList(null, "FREE", "BUSY-TENTATIVE");
+    // How many generated UIDs to write in each transaction
+    private static final int UID_BATCH_SIZE = 100;
 
-    private static final String[] EVENT_COLS = new String[] {
-        Events._ID, Events.ORIGINAL_ID, Events.UID_2445, Events.TITLE, Events.DESCRIPTION,
-        Events.ORGANIZER, Events.EVENT_LOCATION, Events.STATUS, Events.ALL_DAY, Events.RDATE,
-        Events.RRULE, Events.DTSTART, Events.EVENT_TIMEZONE, Events.DURATION, Events.DTEND,
-        Events.EVENT_END_TIMEZONE, Events.ACCESS_LEVEL, Events.AVAILABILITY, Events.EXDATE,
-        Events.EXRULE, Events.CUSTOM_APP_PACKAGE, Events.CUSTOM_APP_URI, Events.HAS_ALARM
-    };
+    // How many events each conversion task converts, and how many tasks per core
+    // may be waiting to be written before reading more events
+    private static final int CONVERT_CHUNK_SIZE = 32;
+    private static final int CONVERT_TASKS_PER_CPU = 2;
 
-    private static final String[] REMINDER_COLS = new String[] {
-        Reminders.MINUTES, Reminders.METHOD
-    };
+    // An event row and its reminders, copied for conversion on another thread
+    private static final class EventSnapshot {
+        private final EventRow mEvent;
+        private final List<EventRow> mReminders;
+
+        EventSnapshot(EventRow event, List<EventRow> reminders) {
+            mEvent = event;
+            mReminders = reminders;
+        }
+    }
+
+    // The text of a converted event and the timezones it uses
+    private static final class ConvertedEvent {
+        private final String mText;
+        private final List<TimeZoneCache.Entry> mTimeZones;
+
+        ConvertedEvent(String text, List<TimeZoneCache.Entry> timeZones) {
+            mText = text;
+            mTimeZones = timeZones;
+        }
+    }
 
     public SaveCalendar(MainActivity activity) {
         super(activity, R.string.writing_calendar_to_file, true);
@@ -125,8 +120,9 @@ public class SaveCalendar extends RunnableWithProgress {
         final Settings settings = activity.getSettings();
         final AndroidCalendar selectedCal = activity.getSelectedCalendar();
 
+        mTimeZones = TimeZoneCache.getInstance();
+        mConverter = new EventConverter(mTimeZones);
         mInsertedTimeZones.clear();
-        mFailedOrganisers.clear();
         mAllCols = settings.getQueryAllColumns();
 
         String lastName = settings.getString(Settings.PREF_LASTEXPORTFILE);
@@ -155,16 +151,16 @@ public class SaveCalendar extends RunnableWithProgress {
         }
 
         String prodId = "-//" + selectedCal.mOwner + "//iCal Import/Export " + ver + "//EN";
-        Calendar cal = new Calendar();
-        cal.getProperties().add(new ProdId(prodId));
-        cal.getProperties().add(Version.VERSION_2_0);
-        cal.getProperties().add(Method.PUBLISH);
-        cal.getProperties().add(CalScale.GREGORIAN);
+        PropertyList header = new PropertyList();
+        header.add(new ProdId(prodId));
+        header.add(Version.VERSION_2_0);
+        header.add(Method.PUBLISH);
+        header.add(CalScale.GREGORIAN);
         if (selectedCal.mTimezone != null) {
             // We don't write any events with floating times, but export this
             // anyway so the default timezone for new events is correct when
             // the file is imported into a system that supports it.
-            cal.getProperties().add(new XProperty("X-WR-TIMEZONE", selectedCal.mTimezone));
+            header.add(new XProperty("X-WR-TIMEZONE", selectedCal.mTimezone));
         }
 
         // query events
@@ -175,76 +171,288 @@ public class SaveCalendar extends RunnableWithProgress {
         }
         boolean relaxed = settings.getIcal4jValidationRelaxed();
         CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_RELAXED_VALIDATION, relaxed);
-        List<VEvent> events = getEvents(resolver, selectedCal, cal);
-
-        for (VEvent v: events)
-            cal.getComponents().add(v);
 
-        new CalendarOutputter().output(cal, new FileOutputStream(fileName));
+        // Write each event as soon as it is converted rather than collecting them
+        // all into a Calendar first, so that memory use does not grow with the
+        // number of events.
+        int numEvents = 0;
+        boolean cancelled = false;
+        FileOutputStream stream = new FileOutputStream(fileName);
+        CalendarWriter out = null;
+        try {
+            out = new CalendarWriter(stream, header);
+            writeTimeZones(resolver, selectedCal, out);
+            numEvents = writeEvents(resolver, selectedCal, out);
+            out.close();
+        } catch (Exception e) {
+            // Don't leave a partially written file behind
+            try {
+                if (out != null)
+                    out.close();
+                else
+                    stream.close(); // Failed writing the header
+            } catch (IOException ignored) {
+            }
+            if (!new File(fileName).delete())
+                Log.w(TAG, "Failed to delete partial file " + fileName);
+            if (!(e instanceof CancellationException))
+                throw e;
+            cancelled = true;
+        }
 
         Resources res = activity.getResources();
-        String msg = res.getQuantityString(R.plurals.wrote_n_events_to, events.size(), events.size(), file);
+        String msg;
+        if (cancelled)
+            msg = res.getString(R.string.cancelled);
+        else
+            msg = res.getQuantityString(R.plurals.wrote_n_events_to, numEvents, numEvents, file);
         if (numberOfCreatedUids > 0) {
             msg += "\n" + res.getQuantityString(R.plurals.created_n_uids_to, numberOfCreatedUids, numberOfCreatedUids);
         }
         activity.showToast(msg);
     }
 
+    // Give every event in the calendar a UID, so that exporting the calendar
+    // again gives the same UIDs. The UIDs are written in batches, each in a
+    // single transaction; if interrupted, the next export continues with the
+    // events that still have no UID.
     private int ensureUids(MainActivity activity, ContentResolver resolver, AndroidCalendar cal) {
         String[] cols = new String[] { Events._ID };
         String[] args = new String[] { cal.mIdStr };
-        Map<Long, String> newUids = new HashMap<>();
         Cursor cur = resolver.query(Events.CONTENT_URI, cols,
                 Events.CALENDAR_ID + " = ? AND " + Events.UID_2445 + " IS NULL", args, null);
-        while (cur.moveToNext()) {
-            Long id = getLong(cur, Events._ID);
-            String uid = activity.generateUid();
-            newUids.put(id, uid);
+        if (cur == null)
+            return 0;
+        long[] ids;
+        try {
+            ids = new long[cur.getCount()];
+            for (int i = 0; cur.moveToNext(); i++)
+                ids[i] = cur.getLong(0);
+        } finally {
+            cur.close();
         }
-        for (Long id: newUids.keySet()) {
-            String uid = newUids.get(id);
-            Uri updateUri = ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, id);
-            ContentValues c = new ContentValues();
-            c.put(Events.UID_2445, uid);
-            resolver.update(updateUri, c, null, null);
-            Log.i(TAG, "Generated UID " + uid + " for event " + id);
+        if (ids.length == 0)
+            return 0;
+
+        UidGenerator generator = UidGenerator.getInstance(activity.getSettings());
+        setMax(ids.length);
+        int numUpdated = 0;
+        for (int start = 0; start < ids.length; start += UID_BATCH_SIZE) {
+            if (isTaskCancelled())
+                break; // Report the UIDs written so far
+            final int n = Math.min(UID_BATCH_SIZE, ids.length - start);
+            String[] uids = generator.generate(n);
+            ArrayList<ContentProviderOperation> ops = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                Uri updateUri = ContentUris.withAppendedId(Events.CONTENT_URI, ids[start + i]);
+                ops.add(ContentProviderOperation.newUpdate(updateUri)
+                                                .withValue(Events.UID_2445, uids[i]).build());
+            }
+            try {
+                resolver.applyBatch(CalendarContractWrapper.AUTHORITY, ops);
+                numUpdated += n;
+            } catch (RemoteException | OperationApplicationException e) {
+                Log.w(TAG, "Batch UID update failed, updating events individually", e);
+                for (int i = 0; i < n; i++) {
+                    ContentValues c = new ContentValues();
+                    c.put(Events.UID_2445, uids[i]);
+                    Uri updateUri = ContentUris.withAppendedId(Events.CONTENT_URI, ids[start + i]);
+                    if (resolver.update(updateUri, c, null, null) > 0)
+                        numUpdated++;
+                }
+            }
+            Log.d(TAG, "Generated UIDs " + uids[0] + " to " + uids[n - 1]);
+            for (int i = 0; i < n; i++)
+                incrementProgress();
         }
-        return newUids.size();
+        Log.i(TAG, "Generated " + numUpdated + " UIDs");
+        return numUpdated;
     }
 
-    private List<VEvent> getEvents(ContentResolver resolver, AndroidCalendar cal_src, Calendar cal_dst) {
+    // Write the timezones used by the events up front, so they precede the events
+    private void writeTimeZones(ContentResolver resolver, AndroidCalendar cal_src,
+                                CalendarWriter out) throws IOException, ValidationException {
+        List<String> cols = new ArrayList<>();
+        cols.add(Events.ALL_DAY);
+        cols.add(Events.EVENT_TIMEZONE);
+        if (Events.EVENT_END_TIMEZONE != null)
+            cols.add(Events.EVENT_END_TIMEZONE);
+
         String where = Events.CALENDAR_ID + "=?";
         String[] args = new String[] { cal_src.mIdStr };
-        String sortBy = Events.CALENDAR_ID + " ASC";
         Cursor cur;
         try {
-            cur = resolver.query(Events.CONTENT_URI, mAllCols ? null : EVENT_COLS,
-                                 where, args, sortBy);
+            cur = resolver.query(Events.CONTENT_URI, cols.toArray(new String[cols.size()]),
+                                 where, args, null);
         } catch (Exception except) {
-            Log.w(TAG, "Calendar provider is missing columns, continuing anyway");
-            int n = 0;
-            for (n = 0; n < EVENT_COLS.length; ++n)
-                if (EVENT_COLS[n] == null)
-                    Log.e(TAG, "Invalid EVENT_COLS index " + Integer.toString(n));
-            cur = resolver.query(Events.CONTENT_URI, null, where, args, sortBy);
+            // Any timezones are written before the events that use them instead
+            Log.w(TAG, "Failed to query timezones, continuing anyway");
+            return;
+        }
+        if (cur == null)
+            return;
+
+        Set<String> seen = new HashSet<>();
+        try {
+            while (cur.moveToNext()) {
+                if (cur.getInt(0) == 1)
+                    continue; // All day events are written without timezones
+                for (int i = 1; i < cols.size(); i++) {
+                    String tz = cur.getString(i);
+                    if (tz == null || !seen.add(tz))
+                        continue;
+                    writeTimeZone(mTimeZones.get(tz), out);
+                }
+            }
+        } finally {
+            cur.close();
+        }
+    }
+
+    private void writeTimeZone(TimeZoneCache.Entry tz, CalendarWriter out) throws IOException {
+        if (tz.getVTimeZone() != null && mInsertedTimeZones.add(tz))
+            out.writeValidated(tz.getVTimeZone());
+    }
+
+    private int writeEvents(ContentResolver resolver, AndroidCalendar cal_src, CalendarWriter out)
+        throws Exception {
+        EventWriter writer = new EventWriter(out);
+        try {
+            new ProviderEventStore(resolver, cal_src, mAllCols).readEvents(writer);
+            return writer.finish();
+        } finally {
+            writer.cancel();
+        }
+    }
+
+    // Converts and writes the events read from the store. With more than one core,
+    // this thread copies the rows and converts them in chunks on the CPU pool. The
+    // chunks are written in the order they were read, so the output is the same
+    // as a serial export.
+    private final class EventWriter implements EventStore.Visitor {
+        private final CalendarWriter mOut;
+        private final DtStamp mTimestamp = new DtStamp(); // Same timestamp for all events
+        private final boolean mParallel = Runtime.getRuntime().availableProcessors() > 1;
+        private final int mMaxPending = CONVERT_TASKS_PER_CPU
+                                        * Runtime.getRuntime().availableProcessors();
+        private final Queue<Future<List<ConvertedEvent>>> mPending = new LinkedList<>();
+        private List<EventSnapshot> mChunk = new ArrayList<>(CONVERT_CHUNK_SIZE);
+        private int mNumEvents;
+
+        EventWriter(CalendarWriter out) {
+            mOut = out;
+        }
+
+        public void onStart(int numEvents) {
+            setMax(numEvents);
         }
 
-        DtStamp timestamp = new DtStamp(); // Same timestamp for all events
-
-        // Collect up events and add them after any timezones
-        setMax(cur.getCount());
-        List<VEvent> events = new ArrayList<>();
-        while (cur.moveToNext()) {
-            incrementProgress();
-            VEvent e = convertFromDb(cur, cal_dst, timestamp);
-            if (e != null) {
-                events.add(e);
-                if (Log.getIsUserEnabled())
-                    Log.d(TAG, "Adding event: " + e.toString());
+        public void onEvent(EventRow event, List<EventRow> reminders)
+            throws IOException, ValidationException {
+            checkCancelled();
+            if (!mParallel) {
+                incrementProgress();
+                write(convertEvent(event, reminders, mTimestamp, mOut));
+                return;
+            }
+            mChunk.add(new EventSnapshot(event.snapshot(), reminders));
+            if (mChunk.size() == CONVERT_CHUNK_SIZE) {
+                submitChunk();
+                while (mPending.size() >= mMaxPending)
+                    writeChunk(mPending.remove());
             }
         }
-        cur.close();
-        return events;
+
+        // Write the events still being converted, returning the number written
+        public int finish() throws IOException, ValidationException {
+            if (!mChunk.isEmpty())
+                submitChunk();
+            while (!mPending.isEmpty())
+                writeChunk(mPending.remove());
+            return mNumEvents;
+        }
+
+        public void cancel() {
+            for (Future<List<ConvertedEvent>> f: mPending)
+                f.cancel(true);
+        }
+
+        private void submitChunk() {
+            final List<EventSnapshot> rows = mChunk;
+            final long timestampMs = mTimestamp.getDateTime().getTime();
+            mChunk = new ArrayList<>(CONVERT_CHUNK_SIZE);
+
+            Callable<List<ConvertedEvent>> task = new Callable<List<ConvertedEvent>>() {
+                public List<ConvertedEvent> call() throws Exception {
+                    // ical4j dates aren't thread safe, so each task has its own timestamp
+                    DateTime dt = new DateTime(timestampMs);
+                    dt.setUtc(true);
+                    DtStamp timestamp = new DtStamp(dt);
+
+                    List<ConvertedEvent> events = new ArrayList<>(rows.size());
+                    for (EventSnapshot r: rows) {
+                        TaskScheduler.checkCancelled();
+                        events.add(convertEvent(r.mEvent, r.mReminders, timestamp, mOut));
+                    }
+                    return events;
+                }
+            };
+            mPending.add(TaskScheduler.getInstance().submit(TaskScheduler.Pool.CPU, TAG, task));
+        }
+
+        // Wait for a chunk to be converted and write it
+        private void writeChunk(Future<List<ConvertedEvent>> chunk)
+            throws IOException, ValidationException {
+            List<ConvertedEvent> events;
+            try {
+                events = chunk.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+                if (cause instanceof ValidationException)
+                    throw (ValidationException) cause;
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw new RuntimeException(cause);
+            }
+
+            for (ConvertedEvent e: events) {
+                checkCancelled();
+                incrementProgress();
+                write(e);
+            }
+        }
+
+        private void write(ConvertedEvent e) throws IOException {
+            if (e == null)
+                return;
+            for (TimeZoneCache.Entry tz: e.mTimeZones)
+                writeTimeZone(tz, mOut); // In case it was missed by writeTimeZones()
+            mOut.writeValidated(e.mText);
+            mNumEvents++;
+        }
+    }
+
+    // Convert and validate an event, returning null if it isn't exported. This
+    // may be called from any thread.
+    private ConvertedEvent convertEvent(EventRow row, List<EventRow> reminders,
+                                        DtStamp timestamp, CalendarWriter out)
+        throws ValidationException {
+        if (Log.getIsUserEnabled())
+            Log.d(TAG, "cursor: " + row.toString());
+        List<TimeZoneCache.Entry> timeZones = new ArrayList<>(2);
+        VEvent e = mConverter.toVEvent(row, reminders, timeZones, timestamp);
+        if (e == null)
+            return null;
+        if (Log.getIsUserEnabled())
+            Log.d(TAG, "Adding event: " + e.toString());
+        return new ConvertedEvent(out.format(e), timeZones);
     }
 
     private String calculateFileName(final String displayName) {
@@ -312,268 +520,11 @@ public class SaveCalendar extends RunnableWithProgress {
         while (result[0] == null) {
             try {
                 Thread.sleep(30);
-            } catch (InterruptedException ignored) {
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Cancelled, so don't save
+                return "";
             }
         }
         return result[0];
     }
-
-    private VEvent convertFromDb(Cursor cur, Calendar cal, DtStamp timestamp) {
-        if (Log.getIsUserEnabled())
-            Log.d(TAG, "cursor: " + DatabaseUtils.dumpCurrentRowToString(cur));
-
-        if (hasStringValue(cur, Events.ORIGINAL_ID)) {
-            // FIXME: Support these edited instances
-            Log.w(TAG, "Ignoring edited instance of a recurring event");
-            return null;
-        }
-
-        PropertyList l = new PropertyList();
-        l.add(timestamp);
-        copyProperty(l, Property.UID, cur, Events.UID_2445);
-
-        String summary = copyProperty(l, Property.SUMMARY, cur, Events.TITLE);
-        String description = copyProperty(l, Property.DESCRIPTION, cur, Events.DESCRIPTION);
-
-        String organizer = getString(cur, Events.ORGANIZER);
-        if (!TextUtils.isEmpty(organizer)) {
-            // The check for mailto: here handles early versions of this code which
-            // incorrectly left it in the organizer column.
-            if (!organizer.startsWith("mailto:"))
-                organizer = "mailto:" + organizer;
-            try {
-                l.add(new Organizer(organizer));
-            } catch (URISyntaxException ignored) {
-                if (!mFailedOrganisers.contains(organizer)) {
-                    Log.e(TAG, "Failed to create mailTo for organizer " + organizer);
-                    mFailedOrganisers.add(organizer);
-                }
-             }
-        }
-
-        copyProperty(l, Property.LOCATION, cur, Events.EVENT_LOCATION);
-        copyEnumProperty(l, Property.STATUS, cur, Events.STATUS, STATUS_ENUM);
-
-        boolean allDay = TextUtils.equals(getString(cur, Events.ALL_DAY), "1");
-        boolean isTransparent;
-        DtEnd dtEnd = null;
-
-        if (allDay) {
-            // All day event
-            isTransparent = true;
-            Date start = getDateTime(cur, Events.DTSTART, null, null);
-            Date end = getDateTime(cur, Events.DTEND, null, null);
-            l.add(new DtStart(new Date(start)));
-
-            if (end != null) {
-                dtEnd = new DtEnd(new Date(end));
-            } else {
-                dtEnd = new DtEnd(utcDateFromMs(start.getTime() + DateUtils.DAY_IN_MILLIS));
-            }
-
-            l.add(dtEnd);
-        } else {
-            // Regular or zero-time event. Start date must be a date-time
-            Date startDate = getDateTime(cur, Events.DTSTART, Events.EVENT_TIMEZONE, cal);
-            l.add(new DtStart(startDate));
-
-            // Use duration if we have one, otherwise end date
-            if (hasStringValue(cur, Events.DURATION)) {
-                isTransparent = getString(cur, Events.DURATION).equals("PT0S");
-                if (!isTransparent) {
-                    copyProperty(l, Property.DURATION, cur, Events.DURATION);
-                }
-            } else {
-                String endTz = Events.EVENT_END_TIMEZONE;
-                if (endTz == null) {
-                    endTz = Events.EVENT_TIMEZONE;
-                }
-                Date end = getDateTime(cur, Events.DTEND, endTz, cal);
-                dtEnd = new DtEnd(end);
-                isTransparent = startDate.getTime() == end.getTime();
-                if (!isTransparent) {
-                    l.add(dtEnd);
-                }
-            }
-        }
-
-        copyEnumProperty(l, Property.CLASS, cur, Events.ACCESS_LEVEL, CLASS_ENUM);
-
-        int availability = getInt(cur, Events.AVAILABILITY);
-        if (availability > Events.AVAILABILITY_TENTATIVE)
-            availability = -1;     // Unknown/Invalid
-
-        if (isTransparent) {
-            // This event is ordinarily transparent. If availability shows that its
-            // not free, then mark it opaque.
-            if (availability >= 0 && availability != Events.AVAILABILITY_FREE)
-                l.add(Transp.OPAQUE);
-
-        } else if (availability > Events.AVAILABILITY_BUSY) {
-            // This event is ordinarily busy but differs, so output a FREEBUSY
-            // period covering the time of the event
-            FreeBusy fb = new FreeBusy();
-            fb.getParameters().add(new FbType(AVAIL_ENUM.get(availability)));
-            DateTime start = new DateTime(((DtStart) l.getProperty(Property.DTSTART)).getDate());
-
-            if (dtEnd != null)
-                fb.getPeriods().add(new Period(start, new DateTime(dtEnd.getDate())));
-            else {
-                Duration d = (Duration) l.getProperty(Property.DURATION);
-                fb.getPeriods().add(new Period(start, d.getDuration()));
-            }
-            l.add(fb);
-        }
-
-        copyProperty(l, Property.RRULE, cur, Events.RRULE);
-        copyProperty(l, Property.RDATE, cur, Events.RDATE);
-        copyProperty(l, Property.EXRULE, cur, Events.EXRULE);
-        copyProperty(l, Property.EXDATE, cur, Events.EXDATE);
-        if (TextUtils.isEmpty(getString(cur, Events.CUSTOM_APP_PACKAGE))) {
-            // Only copy URL if there is no app i.e. we probably imported it.
-            copyProperty(l, Property.URL, cur, Events.CUSTOM_APP_URI);
-        }
-
-        VEvent e = new VEvent(l);
-
-        if (getInt(cur, Events.HAS_ALARM) == 1) {
-            // Add alarms
-
-            String s = summary == null ? (description == null ? "" : description) : summary;
-            Description desc = new Description(s);
-
-            ContentResolver resolver = getActivity().getContentResolver();
-            long eventId = getLong(cur, Events._ID);
-            Cursor alarmCur;
-            alarmCur = Reminders.query(resolver, eventId, mAllCols ? null : REMINDER_COLS);
-            while (alarmCur.moveToNext()) {
-                int mins = getInt(alarmCur, Reminders.MINUTES);
-                if (mins == -1)
-                    mins = 60;     // FIXME: Get the real default
-
-                // FIXME: We should support other types if possible
-                int method = getInt(alarmCur, Reminders.METHOD);
-                if (method == Reminders.METHOD_DEFAULT || method == Reminders.METHOD_ALERT) {
-                    VAlarm alarm = new VAlarm(new Dur(0, 0, -mins, 0));
-                    alarm.getProperties().add(Action.DISPLAY);
-                    alarm.getProperties().add(desc);
-                    e.getAlarms().add(alarm);
-                }
-            }
-            alarmCur.close();
-        }
-
-        return e;
-    }
-
-    private int getColumnIndex(Cursor cur, String dbName) {
-        return dbName == null ? -1 : cur.getColumnIndex(dbName);
-    }
-
-    private String getString(Cursor cur, String dbName) {
-        int i = getColumnIndex(cur, dbName);
-        return i == -1 ? null : cur.getString(i);
-    }
-
-    private long getLong(Cursor cur, String dbName) {
-        int i = getColumnIndex(cur, dbName);
-        return i == -1 ? -1 : cur.getLong(i);
-    }
-
-    private int getInt(Cursor cur, String dbName) {
-        int i = getColumnIndex(cur, dbName);
-        return i == -1 ? -1 : cur.getInt(i);
-    }
-
-    private boolean hasStringValue(Cursor cur, String dbName) {
-        int i = getColumnIndex(cur, dbName);
-        return i != -1 && !TextUtils.isEmpty(cur.getString(i));
-    }
-
-    private Date utcDateFromMs(long ms) {
-        // This date will be UTC provided the default false value of the iCal4j property
-        // "net.fortuna.ical4j.timezone.date.floating" has not been changed.
-        return new Date(ms);
-    }
-
-    private boolean isUtcTimeZone(final String tz) {
-        if (TextUtils.isEmpty(tz))
-            return true;
-        final String utz = tz.toUpperCase(Locale.US);
-        return utz.equals("UTC") || utz.equals("UTC-0") || utz.equals("UTC+0") || utz.endsWith("/UTC");
-    }
-
-    private Date getDateTime(Cursor cur, String dbName, String dbTzName, Calendar cal) {
-        int i = getColumnIndex(cur, dbName);
-        if (i == -1 || cur.isNull(i)) {
-            Log.e(TAG, "No valid " + dbName + " column found, index: " + Integer.toString(i));
-            return null;
-        }
-
-        if (cal == null) {
-            return utcDateFromMs(cur.getLong(i));     // Ignore timezone for date-only dates
-        } else if (dbTzName == null)
-            Log.e(TAG, "No valid tz " + dbName + " column given");
-
-        String tz = getString(cur, dbTzName);
-        final boolean isUtc = isUtcTimeZone(tz);
-
-        DateTime dt = new DateTime(isUtc);
-        if (dt.isUtc() != isUtc)
-            throw new RuntimeException("UTC mismatch after construction");
-        dt.setTime(cur.getLong(i));
-        if (dt.isUtc() != isUtc)
-            throw new RuntimeException("UTC mismatch after setTime");
-
-        if (!isUtc) {
-            if (mTzRegistry == null) {
-                mTzRegistry = TimeZoneRegistryFactory.getInstance().createRegistry();
-                if (mTzRegistry == null)
-                    throw new RuntimeException("Failed to create TZ registry");
-            }
-            TimeZone t = mTzRegistry.getTimeZone(tz);
-            if (t == null)
-                Log.e(TAG, "Unknown TZ " + tz + ", assuming UTC");
-            else {
-                dt.setTimeZone(t);
-                if (!mInsertedTimeZones.contains(t)) {
-                    cal.getComponents().add(t.getVTimeZone());
-                    mInsertedTimeZones.add(t);
-                }
-            }
-        }
-        return dt;
-    }
-
-    private String copyProperty(PropertyList l, String evName, Cursor cur, String dbName) {
-        // None of the exceptions caught below should be able to be thrown AFAICS.
-        try {
-            String value = getString(cur, dbName);
-            if (value != null) {
-                Property p = mPropertyFactory.createProperty(evName);
-                p.setValue(value);
-                l.add(p);
-                return value;
-            }
-        } catch (IOException | URISyntaxException | ParseException ignored) {
-        }
-        return null;
-    }
-
-    private void copyEnumProperty(PropertyList l, String evName, Cursor cur, String dbName,
-                                     List<String> vals) {
-        // None of the exceptions caught below should be able to be thrown AFAICS.
-        try {
-            int i = getColumnIndex(cur, dbName);
-            if (i != -1 && !cur.isNull(i)) {
-                int value = (int) cur.getLong(i);
-                if (value >= 0 && value < vals.size() && vals.get(value) != null) {
-                    Property p = mPropertyFactory.createProperty(evName);
-                    p.setValue(vals.get(value));
-                    l.add(p);
-                }
-            }
-        } catch (IOException | URISyntaxException | ParseException ignored) {
-        }
-    }
 }
@@ -5,6 +5,7 @@ package org.sufficientlysecure.ical;
 import android.content.SharedPreferences;
 
 public class Settings {
+    public static final String PREF_BATCH_SIZE = "batch_size";
     public static final String PREF_DEBUG_LOGGING = "debug_logging";
     public static final String PREF_DEFAULT_REMINDERS = "default_reminders";
     public static final String PREF_DEVELOPER_MODE = "developer_mode";
@@ -28,14 +29,30 @@ public class Settings {
     public static final String PREF_NET_FORTUNA_ICAL4J_TIMEZONE_UPDATE_ENABLED = "net.fortuna.ical4j.timezone.update.enabled";
     public static final String PREF_QUERY_ALL_COLUMNS = "query_all_columns";
     public static final String PREF_SAVE_PASSWORDS = "save_passwords";
+    public static final String PREF_SEARCH_EXCLUSIONS = "search_exclusions";
+    public static final String PREF_SUBSCRIPTIONS = "subscriptions";
     public static final String PREF_TEST_FILE_SUPPORT = "test_file_support";
     public static final String PREF_UIDPID = "uidPid";
+    public static final String PREF_UPDATE_FREQUENCY = "update_frequency";
+    public static final String PREF_WATCHED_FOLDERS = "watched_folders";
+    public enum BatchSizeEnum {
+        BATCH_100,
+        BATCH_500,
+        BATCH_20,
+        BATCH_1,
+    }
     public enum DuplicateHandlingEnum {
         DUP_REPLACE,
         DUP_REPLACE_ANY,
         DUP_IGNORE,
         DUP_DONT_CHECK,
     }
+    public enum UpdateFrequencyEnum {
+        SYNC_DAILY,
+        SYNC_TWICE_DAILY,
+        SYNC_HOURLY,
+        SYNC_MANUAL,
+    }
     private final SharedPreferences mPreferences;
 
     public Settings(SharedPreferences preferences) {
@@ -142,6 +159,14 @@ public class Settings {
         putBoolean(PREF_GLOBAL_UIDS, value);
     }
 
+    public BatchSizeEnum getBatchSize() {
+        return BatchSizeEnum.values()[getEnumInt(PREF_BATCH_SIZE, 0)];
+    }
+
+    public void setBatchSize(BatchSizeEnum value) {
+        putEnumInt(PREF_BATCH_SIZE, value.ordinal());
+    }
+
     public boolean getImportReminders() {
         return getBoolean(PREF_IMPORT_REMINDERS, true);
     }
@@ -150,6 +175,14 @@ public class Settings {
         putBoolean(PREF_IMPORT_REMINDERS, value);
     }
 
+    public UpdateFrequencyEnum getUpdateFrequency() {
+        return UpdateFrequencyEnum.values()[getEnumInt(PREF_UPDATE_FREQUENCY, 0)];
+    }
+
+    public void setUpdateFrequency(UpdateFrequencyEnum value) {
+        putEnumInt(PREF_UPDATE_FREQUENCY, value.ordinal());
+    }
+
     public boolean getIcal4jUnfoldingRelaxed() {
         return getBoolean(PREF_ICAL4J_UNFOLDING_RELAXED, true);
     }
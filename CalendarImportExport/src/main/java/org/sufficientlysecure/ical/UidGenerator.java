@@ -0,0 +1,89 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Generates UIDs for events that don't have one. A single generator is shared
+// by the whole process so that imports and exports running at the same time,
+// such as a background subscription sync, can never generate the same UID.
+//
+// Generated UIDs take the form <ms><uuid>@sufficientlysecure.org, where <ms>
+// starts at the current time and increases by one for each UID. The counter
+// is advanced with a compare and swap, so generating UIDs never blocks.
+public final class UidGenerator {
+    private static final int MAX_DIGITS = 19; // Long.MAX_VALUE has 19 digits
+
+    private static UidGenerator sInstance;
+
+    private final char[] mTail;
+    private final AtomicLong mNextMs = new AtomicLong();
+
+    private UidGenerator(String tail) {
+        mTail = tail.toCharArray();
+    }
+
+    public static synchronized UidGenerator getInstance(Settings settings) {
+        if (sInstance == null) {
+            String uidPid = settings.getString(Settings.PREF_UIDPID);
+            if (uidPid.length() == 0) {
+                uidPid = UUID.randomUUID().toString().replace("-", "");
+                settings.putString(Settings.PREF_UIDPID, uidPid);
+            }
+            sInstance = new UidGenerator(uidPid + "@sufficientlysecure.org");
+        }
+        return sInstance;
+    }
+
+    public String generate() {
+        return format(reserve(1), new char[MAX_DIGITS + mTail.length]);
+    }
+
+    // Generate several UIDs at once, for batch inserts
+    public String[] generate(int count) {
+        String[] uids = new String[count];
+        final long firstMs = reserve(count);
+        char[] buffer = new char[MAX_DIGITS + mTail.length];
+        for (int i = 0; i < count; i++)
+            uids[i] = format(firstMs + i, buffer);
+        return uids;
+    }
+
+    // Reserve count consecutive values, returning the first
+    private long reserve(int count) {
+        final long nowMs = System.currentTimeMillis();
+        while (true) {
+            final long nextMs = mNextMs.get();
+            final long firstMs = Math.max(nextMs, nowMs);
+            if (mNextMs.compareAndSet(nextMs, firstMs + count))
+                return firstMs;
+        }
+    }
+
+    // Write the digits of value followed by the tail to the end of the buffer
+    private String format(long value, char[] buffer) {
+        int start = MAX_DIGITS;
+        do {
+            buffer[--start] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        System.arraycopy(mTail, 0, buffer, MAX_DIGITS, mTail.length);
+        return new String(buffer, start, buffer.length - start);
+    }
+}
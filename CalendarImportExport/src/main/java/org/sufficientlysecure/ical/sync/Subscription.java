@@ -0,0 +1,155 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import org.sufficientlysecure.ical.Settings;
+import org.sufficientlysecure.ical.util.Log;
+
+// A calendar URL that is imported into a calendar periodically. Subscriptions
+// are stored as a JSON array in the preferences.
+public class Subscription {
+    private static final String TAG = "ICS_Subscription";
+
+    private static final String URL = "url";
+    private static final String USERNAME = "username";
+    private static final String PASSWORD = "password";
+    private static final String CALENDAR_ID = "calendarId";
+    private static final String CALENDAR_NAME = "calendarName";
+    private static final String DIGEST = "digest";
+    private static final String LAST_SYNC_MS = "lastSyncMs";
+
+    public String mUrl;
+    public String mUsername;
+    public String mPassword;
+    public long mCalendarId;
+    public String mCalendarName;
+    public String mDigest; // Digest of the calendar when it was last imported
+    public long mLastSyncMs;
+
+    public Subscription(String url, String username, String password,
+                        long calendarId, String calendarName) {
+        mUrl = url;
+        mUsername = username;
+        mPassword = password;
+        mCalendarId = calendarId;
+        mCalendarName = calendarName;
+    }
+
+    public static synchronized List<Subscription> loadAll(Settings settings) {
+        List<Subscription> subscriptions = new ArrayList<>();
+        String json = settings.getString(Settings.PREF_SUBSCRIPTIONS);
+        if (json.length() == 0)
+            return subscriptions;
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++)
+                subscriptions.add(fromJson(array.getJSONObject(i)));
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to read subscriptions", e);
+        }
+        return subscriptions;
+    }
+
+    // Add a subscription, replacing any existing subscription of the same
+    // URL into the same calendar.
+    public static synchronized void add(Settings settings, Subscription subscription) {
+        List<Subscription> subscriptions = loadAll(settings);
+        int i = subscriptions.indexOf(subscription);
+        if (i == -1)
+            subscriptions.add(subscription);
+        else
+            subscriptions.set(i, subscription);
+        saveAll(settings, subscriptions);
+    }
+
+    public static synchronized void remove(Settings settings, Subscription subscription) {
+        List<Subscription> subscriptions = loadAll(settings);
+        if (subscriptions.remove(subscription))
+            saveAll(settings, subscriptions);
+    }
+
+    // Save the sync state of a subscription, unless it has since been removed
+    public static synchronized void update(Settings settings, Subscription subscription) {
+        List<Subscription> subscriptions = loadAll(settings);
+        int i = subscriptions.indexOf(subscription);
+        if (i == -1)
+            return;
+        Subscription saved = subscriptions.get(i);
+        saved.mDigest = subscription.mDigest;
+        saved.mLastSyncMs = subscription.mLastSyncMs;
+        saveAll(settings, subscriptions);
+    }
+
+    private static void saveAll(Settings settings, List<Subscription> subscriptions) {
+        JSONArray array = new JSONArray();
+        try {
+            for (Subscription s: subscriptions)
+                array.put(s.toJson());
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to save subscriptions", e);
+            return;
+        }
+        settings.putString(Settings.PREF_SUBSCRIPTIONS, array.toString());
+    }
+
+    private static Subscription fromJson(JSONObject o) throws JSONException {
+        Subscription s = new Subscription(o.getString(URL), o.optString(USERNAME, null),
+                                          o.optString(PASSWORD, null), o.getLong(CALENDAR_ID),
+                                          o.optString(CALENDAR_NAME, ""));
+        s.mDigest = o.optString(DIGEST, null);
+        s.mLastSyncMs = o.optLong(LAST_SYNC_MS, 0);
+        return s;
+    }
+
+    private JSONObject toJson() throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put(URL, mUrl);
+        o.putOpt(USERNAME, mUsername);
+        o.putOpt(PASSWORD, mPassword);
+        o.put(CALENDAR_ID, mCalendarId);
+        o.put(CALENDAR_NAME, mCalendarName);
+        o.putOpt(DIGEST, mDigest);
+        o.put(LAST_SYNC_MS, mLastSyncMs);
+        return o;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Subscription))
+            return false;
+        Subscription s = (Subscription) other;
+        return mUrl.equals(s.mUrl) && mCalendarId == s.mCalendarId;
+    }
+
+    @Override
+    public int hashCode() {
+        return mUrl.hashCode() ^ (int) mCalendarId;
+    }
+
+    @Override
+    public String toString() {
+        return mUrl + " → " + mCalendarName;
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.apache.commons.codec.binary.Hex;
+
+import org.sufficientlysecure.ical.AndroidCalendar;
+import org.sufficientlysecure.ical.CalendarImporter;
+import org.sufficientlysecure.ical.Decompressor;
+import org.sufficientlysecure.ical.HttpCache;
+import org.sufficientlysecure.ical.ImportManifest;
+import org.sufficientlysecure.ical.Settings;
+import org.sufficientlysecure.ical.StreamingCalendarBuilder;
+import org.sufficientlysecure.ical.ui.SettingsActivity;
+import org.sufficientlysecure.ical.util.Log;
+import org.sufficientlysecure.ical.util.TaskScheduler;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.preference.PreferenceManager;
+
+// Imports subscribed calendars in the background. A calendar is only imported
+// if it has changed since it was last imported, which is detected by comparing
+// a digest of its contents. Unchanged calendars are usually not downloaded at
+// all, since the HTTP cache revalidates them with a conditional GET.
+public class SyncService extends IntentService {
+    private static final String TAG = "ICS_SyncService";
+
+    public SyncService() {
+        super(TAG);
+    }
+
+    // Sync all subscriptions as soon as possible
+    public static void syncNow(Context context) {
+        context.startService(new Intent(context, SyncService.class));
+    }
+
+    // Schedule syncing according to the update frequency, or stop syncing if
+    // there is nothing to sync. This can be called at any time, it doesn't
+    // delay a sync that is already due.
+    public static void schedule(Context context) {
+        Settings settings = getSettings(context);
+        AlarmManager alarms = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        Intent intent = new Intent(context, SyncService.class);
+        PendingIntent operation = PendingIntent.getService(context, 0, intent, 0);
+
+        final long intervalMs = getIntervalMs(settings.getUpdateFrequency());
+        List<Subscription> subscriptions = Subscription.loadAll(settings);
+        if (intervalMs == 0 || subscriptions.isEmpty()) {
+            Log.d(TAG, "Background sync disabled");
+            alarms.cancel(operation);
+            return;
+        }
+
+        long lastSyncMs = Long.MAX_VALUE;
+        for (Subscription s: subscriptions)
+            lastSyncMs = Math.min(lastSyncMs, s.mLastSyncMs);
+        final long firstMs = Math.max(System.currentTimeMillis(), lastSyncMs + intervalMs);
+        Log.d(TAG, "Syncing every " + intervalMs + "ms from " + firstMs);
+        alarms.setInexactRepeating(AlarmManager.RTC, firstMs, intervalMs, operation);
+    }
+
+    private static long getIntervalMs(Settings.UpdateFrequencyEnum frequency) {
+        switch (frequency) {
+            case SYNC_TWICE_DAILY:
+                return AlarmManager.INTERVAL_HALF_DAY;
+            case SYNC_HOURLY:
+                return AlarmManager.INTERVAL_HOUR;
+            case SYNC_MANUAL:
+                return 0;
+        }
+        return AlarmManager.INTERVAL_DAY;
+    }
+
+    private static Settings getSettings(Context context) {
+        return new Settings(PreferenceManager.getDefaultSharedPreferences(context));
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        final Settings settings = getSettings(this);
+        SettingsActivity.processSettings(settings);
+
+        // Sync on the IO pool, so that syncing never runs at the same time as
+        // an import or export that the user has started.
+        Runnable task = new Runnable() {
+            public void run() {
+                syncAll(settings);
+            }
+        };
+        Future<?> future = TaskScheduler.getInstance().submit(TaskScheduler.Pool.IO, TAG, task);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Sync failed", e.getCause());
+        }
+    }
+
+    private void syncAll(Settings settings) {
+        List<Subscription> subscriptions = Subscription.loadAll(settings);
+        if (subscriptions.isEmpty())
+            return;
+
+        SettingsActivity.processParserSettings(settings);
+        ContentResolver resolver = getContentResolver();
+        List<AndroidCalendar> calendars = AndroidCalendar.loadAll(resolver);
+        HttpCache cache = new HttpCache(new File(getCacheDir(), "http"));
+
+        for (Subscription s: subscriptions) {
+            if (TaskScheduler.isCancelled())
+                return;
+            AndroidCalendar calendar = null;
+            for (AndroidCalendar c: calendars)
+                if (c.mId == s.mCalendarId)
+                    calendar = c;
+            if (calendar == null) {
+                Log.w(TAG, "Calendar " + s.mCalendarId + " for " + s.mUrl + " no longer exists");
+                continue;
+            }
+
+            try {
+                sync(s, calendar, resolver, settings, cache);
+                Subscription.update(settings, s);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to sync " + s.mUrl, e);
+            }
+        }
+    }
+
+    private void sync(Subscription s, AndroidCalendar calendar, ContentResolver resolver,
+                      Settings settings, HttpCache cache) throws Exception {
+        // Download the calendar first, since it may not need to be imported and
+        // otherwise it is read twice.
+        File file = File.createTempFile("sync", ".ics", getCacheDir());
+        try {
+            final String digest = download(s, cache, file);
+            if (digest.equals(s.mDigest)) {
+                Log.i(TAG, s.mUrl + " has not changed");
+                s.mLastSyncMs = System.currentTimeMillis();
+                return;
+            }
+
+            final StreamingCalendarBuilder builder = new StreamingCalendarBuilder();
+            InputStream in = new FileInputStream(file);
+            try {
+                builder.scan(in);
+            } finally {
+                in.close();
+            }
+
+            // Changed events replace the existing ones, whatever the duplicate
+            // handling setting, otherwise each sync would add the calendar again.
+            final CalendarImporter importer = new CalendarImporter(resolver, settings,
+                                                                   calendar, true);
+            if (importer.getDuplicateHandling() != Settings.DuplicateHandlingEnum.DUP_REPLACE_ANY)
+                importer.setDuplicateHandling(Settings.DuplicateHandlingEnum.DUP_REPLACE);
+            importer.setManifest(ImportManifest.load(this, s.mUrl, calendar.mId));
+            importer.setRemoveMissing(true); // The feed is the whole calendar
+            importer.begin();
+
+            boolean complete = false;
+            final InputStream events = new FileInputStream(file);
+            try {
+                importer.processAll(new CalendarImporter.EventSource() {
+                    public void read(final StreamingCalendarBuilder.EventHandler handler)
+                        throws Exception {
+                        builder.build(events, new StreamingCalendarBuilder.EventHandler() {
+                            public void onEvent(VEvent e) throws Exception {
+                                TaskScheduler.checkCancelled();
+                                handler.onEvent(e);
+                            }
+                        });
+                    }
+                });
+                complete = true;
+            } finally {
+                events.close();
+                // Insert the waiting events even on failure, since their
+                // duplicates may already have been deleted.
+                importer.finish(complete);
+            }
+
+            Log.i(TAG, "Synced " + s.mUrl + ": " + importer.getNumInserted() + " inserted, "
+                       + importer.getNumUpdated() + " updated, "
+                       + importer.getNumUnchanged() + " unchanged, "
+                       + importer.getNumRemoved() + " removed");
+            s.mDigest = digest;
+            s.mLastSyncMs = System.currentTimeMillis();
+        } finally {
+            file.delete();
+        }
+    }
+
+    // Save a subscribed calendar to a file, returning a digest of its contents
+    private String download(Subscription s, HttpCache cache, File file) throws IOException {
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        URL url = new URL(s.mUrl);
+        URLConnection connection = HttpCache.openConnection(url, s.mUsername, s.mPassword);
+        InputStream in = Decompressor.open(cache.open(connection, s.mUsername));
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    TaskScheduler.checkCancelled();
+                    md5.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        return new String(Hex.encodeHex(md5.digest()));
+    }
+}
@@ -28,23 +28,29 @@ import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
-
-import net.fortuna.ical4j.data.CalendarBuilder;
-import net.fortuna.ical4j.model.Calendar;
-import net.fortuna.ical4j.model.component.VEvent;
-import net.fortuna.ical4j.util.CompatibilityHints;
-
-import org.apache.commons.codec.binary.Base64;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.sufficientlysecure.ical.AndroidCalendar;
+import org.sufficientlysecure.ical.Decompressor;
+import org.sufficientlysecure.ical.HttpCache;
+import org.sufficientlysecure.ical.ImportManifest;
 import org.sufficientlysecure.ical.ProcessVEvent;
 import org.sufficientlysecure.ical.SaveCalendar;
 import org.sufficientlysecure.ical.Settings;
+import org.sufficientlysecure.ical.StreamingCalendarBuilder;
+import org.sufficientlysecure.ical.TimeZoneCache;
+import org.sufficientlysecure.ical.UidGenerator;
 import org.sufficientlysecure.ical.R;
+import org.sufficientlysecure.ical.sync.Subscription;
+import org.sufficientlysecure.ical.sync.SyncService;
 import org.sufficientlysecure.ical.ui.dialogs.DialogTools;
 import org.sufficientlysecure.ical.ui.dialogs.RunnableWithProgress;
+import org.sufficientlysecure.ical.util.FileScanner;
+import org.sufficientlysecure.ical.util.FileWatcher;
 import org.sufficientlysecure.ical.util.Log;
+import org.sufficientlysecure.ical.util.RefreshScheduler;
+import org.sufficientlysecure.ical.util.TaskScheduler;
 
 import android.Manifest;
 import android.app.AlertDialog;
@@ -93,8 +99,13 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
 
     private Settings mSettings;
 
-    private CalendarBuilder mCalendarBuilder;
-    private Calendar mCalendar;
+    private static final String[] CALENDAR_EXTENSIONS = new String[] {
+        "ics", "ical", "icalendar", "ics.gz", "ics.zip"
+    };
+
+    private StreamingCalendarBuilder mCalendarBuilder;
+    private volatile CalendarSource mLoadedSource; // The source that mCalendarBuilder scanned
+    private HttpCache mHttpCache;
 
     private static final long NO_CALENDAR = -1;
     private long mIntentCalendarId = NO_CALENDAR;
@@ -103,9 +114,18 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
     private IntentFilter mCalendarUpdateFilter;
     private BroadcastReceiver mCalendarUpdateReciever;
 
-    // UID generation
-    private long mUidMs = 0;
-    private String mUidTail;
+    // Calendar changes are often broadcast in bursts while syncing, so wait for
+    // them to settle and then refresh the calendars once.
+    private static final long CALENDAR_REFRESH_DELAY_MS = 500;
+    private RefreshScheduler mCalendarRefresher;
+
+    // The file list shows the files in the watched folders and those found by
+    // the last search, until a URL or a file from another application is chosen.
+    // mShowingFiles is only used on the UI thread.
+    private volatile FileWatcher mFileWatcher;
+    private String mWatchedFolders; // The setting mFileWatcher was created with
+    private volatile List<File> mSearchResults = Collections.emptyList();
+    private boolean mShowingFiles = true;
 
     // Views
     private Spinner mCalendarSpinner;
@@ -143,14 +163,24 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
             public void onReceive(final Context context, final Intent intent) {
                 Log.d(TAG, "Received broadcast: " + intent.getAction());
                 if (intent.getAction() == mCalendarUpdateFilter.getAction(0))
-                    onExternalCalendarChanged();
+                    mCalendarRefresher.request();
             }
         };
+        mCalendarRefresher = new RefreshScheduler(TAG, CALENDAR_REFRESH_DELAY_MS,
+                                                  new Runnable() {
+                                                      public void run() {
+                                                          initialiseCalendars();
+                                                      }
+                                                  });
 
         initView();
 
-        if (hasPermissions())
+        if (hasPermissions()) {
             initIntent();
+            startFileWatcher();
+        }
+
+        SyncService.schedule(this);
     }
 
     private boolean isGranted(final String permission) {
@@ -199,6 +229,7 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
                     return;
                 }
                 initIntent();
+                startFileWatcher();
             }
         }
     }
@@ -206,6 +237,15 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
     private void initView() {
         mSettings = new Settings(PreferenceManager.getDefaultSharedPreferences(this));
         SettingsActivity.processSettings(mSettings);
+        // Create and save the UID suffix now rather than in the middle of a task
+        UidGenerator.getInstance(mSettings);
+        // Create the timezone cache in the background so exports don't wait for it
+        TaskScheduler.getInstance().submit(TaskScheduler.Pool.CPU, "TimeZoneCache",
+                                           new Runnable() {
+                                               public void run() {
+                                                   TimeZoneCache.getInstance();
+                                               }
+                                           });
 
         // Retrieve views
         mCalendarSpinner = (Spinner) findViewById(R.id.SpinnerChooseCalendar);
@@ -239,7 +279,11 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
         fileListener = new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int pos, long id) {
-                mInsertDeleteLayout.setVisibility(View.GONE);
+                // The list is rebuilt when watched files change, so keep the loaded
+                // calendar if it is still selected
+                String source = parent.getItemAtPosition(pos).toString();
+                if (mLoadedSource == null || !source.equals(mLoadedSource.toString()))
+                    mInsertDeleteLayout.setVisibility(View.GONE);
             }
             @Override
             public void onNothingSelected(AdapterView<?> arg0) {
@@ -410,8 +454,88 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
                       });
     }
 
-    private void setSources(List<CalendarSource> sources) {
+    private void setSources(final List<CalendarSource> sources) {
         setupSpinner(mFileSpinner, sources, mLoadButton);
+        if (mLoadedSource == null)
+            return;
+        // Keep the loaded source selected if it is still listed
+        final String loaded = mLoadedSource.toString();
+        runOnUiThread(new Runnable() {
+                          public void run() {
+                              for (int i = 0; i < sources.size(); i++) {
+                                  if (sources.get(i).toString().equals(loaded)) {
+                                      mFileSpinner.setSelection(i);
+                                      break;
+                                  }
+                              }
+                          }
+                      });
+    }
+
+    // Parse a comma separated list of folders, which are relative to root
+    // unless they start with "/"
+    private List<File> getFolders(File root, String key) {
+        List<File> folders = new ArrayList<>();
+        for (String folder: mSettings.getString(key).split(",")) {
+            folder = folder.trim();
+            if (folder.length() == 0)
+                continue;
+            if (folder.startsWith("/"))
+                folders.add(new File(folder));
+            else
+                folders.add(new File(root, folder));
+        }
+        return folders;
+    }
+
+    private void startFileWatcher() {
+        File root = Environment.getExternalStorageDirectory();
+        List<File> folders = getFolders(root, Settings.PREF_WATCHED_FOLDERS);
+        folders.add(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS));
+        folders.add(new File(root, "Documents")); // DIRECTORY_DOCUMENTS needs API 19
+
+        FileWatcher.Listener listener = new FileWatcher.Listener() {
+            public void onFilesChanged(List<File> files) {
+                showFiles(files, false);
+            }
+        };
+        mWatchedFolders = mSettings.getString(Settings.PREF_WATCHED_FOLDERS);
+        mFileWatcher = new FileWatcher(folders, listener, CALENDAR_EXTENSIONS);
+        mFileWatcher.start();
+    }
+
+    private void stopFileWatcher() {
+        if (mFileWatcher != null)
+            mFileWatcher.stop();
+        mFileWatcher = null;
+    }
+
+    // Show the watched files and the files found by the last search. Unless
+    // always is set, they are not shown if another source has been chosen.
+    private void showFiles(List<File> watchedFiles, final boolean always) {
+        Set<File> files = new TreeSet<>(watchedFiles);
+        for (File file: mSearchResults)
+            if (!files.contains(file) && file.exists())
+                files.add(file);
+
+        final List<CalendarSource> sources = new ArrayList<>();
+        for (File file: files) {
+            try {
+                final String url = file.toURI().toURL().toString();
+                sources.add(new CalendarSource(url, null, null, null));
+            } catch (MalformedURLException e) {
+                // Can't happen
+            }
+        }
+        // Check and publish in one step, so a source chosen meanwhile isn't replaced
+        runOnUiThread(new Runnable() {
+                          public void run() {
+                              if (!always && !mShowingFiles)
+                                  return;
+                              mShowingFiles = true;
+                              setSources(sources);
+                          }
+                      });
     }
 
     protected void onResume() {
@@ -422,6 +546,12 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
         else
             onExternalCalendarChanged();
 
+        if (mFileWatcher != null
+            && !mSettings.getString(Settings.PREF_WATCHED_FOLDERS).equals(mWatchedFolders)) {
+            stopFileWatcher();
+            startFileWatcher();
+        }
+
         registerReceiver(mCalendarUpdateReciever, mCalendarUpdateFilter);
     }
 
@@ -432,18 +562,22 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
         unregisterReceiver(mCalendarUpdateReciever);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mCalendarRefresher.quit();
+        stopFileWatcher();
+    }
+
     private void onExternalCalendarChanged() {
-        new Thread(new Runnable() {
-                           public void run() {
-                               // Update view if any source calendar was modified
-                               MainActivity.this.initialiseCalendars();
-                           }
-                       }).start();
+        // Update view if any source calendar was modified
+        mCalendarRefresher.requestNow();
     }
 
     public boolean setSource(String url, Uri uri, String username, String password) {
         try {
             CalendarSource source = new CalendarSource(url, uri, username, password);
+            mShowingFiles = false;
             setSources(Collections.singletonList(source));
             return true;
         } catch (Exception e) {
@@ -455,27 +589,85 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
         return (AndroidCalendar) mCalendarSpinner.getSelectedItem();
     }
 
-    public InputStream getSelectedURI() throws IOException {
-        CalendarSource sel = (CalendarSource) mFileSpinner.getSelectedItem();
-        return sel == null ? null : sel.getStream();
+    public InputStream getLoadedURI() throws IOException {
+        return mLoadedSource.getStream();
     }
 
-    public String generateUid() {
-        // Generated UIDs take the form <ms>-<uuid>@sufficientlysecure.org.
-        if (mUidTail == null) {
-            String uidPid = mSettings.getString(Settings.PREF_UIDPID);
-            if (uidPid.length() == 0) {
-                uidPid = UUID.randomUUID().toString().replace("-", "");
-                mSettings.putString(Settings.PREF_UIDPID, uidPid);
-            }
-            mUidTail = uidPid + "@sufficientlysecure.org";
+    // A name for the loaded source that is the same each time it is loaded
+    public String getLoadedSourceName() {
+        return mLoadedSource.toString();
+    }
+
+    private synchronized HttpCache getHttpCache() {
+        if (mHttpCache == null)
+            mHttpCache = new HttpCache(new File(getCacheDir(), "http"));
+        return mHttpCache;
+    }
+
+    // Import a URL into the selected calendar now and whenever it changes
+    public void subscribe(String url, String username, String password) {
+        AndroidCalendar calendar = getSelectedCalendar();
+        if (calendar == null)
+            return;
+        if (username.length() == 0) {
+            username = null;
+        } else if (!mSettings.getSavePasswords()) {
+            // Respect the user's choice not to store passwords. Syncing can't
+            // log in without one, so don't subscribe.
+            showToast(getString(R.string.subscribing_needs_saved_password));
+            return;
+        }
+        Subscription.add(mSettings, new Subscription(url, username, password,
+                                                     calendar.mId, calendar.mName));
+        SyncService.schedule(this);
+        SyncService.syncNow(this);
+        showToast(getString(R.string.subscribed_to, calendar.mName));
+    }
+
+    private void showSubscriptions() {
+        final List<Subscription> subscriptions = Subscription.loadAll(mSettings);
+        if (subscriptions.isEmpty()) {
+            DialogTools.info(this, R.string.subscriptions, getString(R.string.no_subscriptions));
+            return;
         }
 
-        mUidMs = Math.max(mUidMs, System.currentTimeMillis());
-        String uid = Long.toString(mUidMs) + mUidTail;
-        mUidMs++;
+        CharSequence[] items = new CharSequence[subscriptions.size()];
+        final boolean[] checked = new boolean[subscriptions.size()];
+        for (int i = 0; i < items.length; i++)
+            items[i] = subscriptions.get(i).toString();
 
-        return uid;
+        DialogInterface.OnMultiChoiceClickListener checkTask;
+        checkTask = new DialogInterface.OnMultiChoiceClickListener() {
+            public void onClick(DialogInterface iface, int which, boolean isChecked) {
+                checked[which] = isChecked;
+            }
+        };
+        DialogInterface.OnClickListener unsubscribeTask;
+        unsubscribeTask = new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface iface, int id) {
+                for (int i = 0; i < checked.length; i++)
+                    if (checked[i]) {
+                        Subscription s = subscriptions.get(i);
+                        Subscription.remove(mSettings, s);
+                        ImportManifest.delete(MainActivity.this, s.mUrl, s.mCalendarId);
+                    }
+                SyncService.schedule(MainActivity.this);
+            }
+        };
+        DialogInterface.OnClickListener syncTask;
+        syncTask = new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface iface, int id) {
+                SyncService.syncNow(MainActivity.this);
+            }
+        };
+        new AlertDialog.Builder(this)
+                       .setTitle(R.string.subscriptions)
+                       .setIcon(R.mipmap.ic_launcher)
+                       .setMultiChoiceItems(items, checked, checkTask)
+                       .setPositiveButton(R.string.unsubscribe, unsubscribeTask)
+                       .setNeutralButton(R.string.sync_now, syncTask)
+                       .setNegativeButton(android.R.string.cancel, null)
+                       .create().show();
     }
 
     @Override
@@ -492,6 +684,10 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
             DialogTools.info(this, R.string.help, Html.fromHtml(getString(R.string.help_html)));
             break;
 
+        case R.id.subscriptions:
+            showSubscriptions();
+            break;
+
         case R.id.settings:
             // Show our Settings view
             startActivity(new Intent(this, SettingsActivity.class));
@@ -516,8 +712,6 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
     }
 
     private class CalendarSource {
-        private static final String HTTP_SEP = "://";
-
         private URL mUrl = null;
         private Uri mUri = null;
         private final String mString;
@@ -538,31 +732,15 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
         }
 
         public URLConnection getConnection() throws IOException {
-            if (mUsername != null) {
-                String protocol = mUrl.getProtocol();
-                String userPass = mUsername + ":" + mPassword;
-
-                if (protocol.equalsIgnoreCase("ftp") || protocol.equalsIgnoreCase("ftps")) {
-                    String external = mUrl.toExternalForm();
-                    String end = external.substring(protocol.length() + HTTP_SEP.length());
-                    return new URL(protocol + HTTP_SEP + userPass + "@" + end).openConnection();
-                }
-
-                if (protocol.equalsIgnoreCase("http") || protocol.equalsIgnoreCase("https")) {
-                    String encoded = new String(new Base64().encode(userPass.getBytes("UTF-8")));
-                    URLConnection connection = mUrl.openConnection();
-                    connection.setRequestProperty("Authorization", "Basic " + encoded);
-                    return connection;
-                }
-            }
-            return mUrl.openConnection();
+            return HttpCache.openConnection(mUrl, mUsername, mPassword);
         }
 
         public InputStream getStream() throws IOException {
+            // Compressed files are decompressed, whatever their source
             if (mUri != null)
-                return getContentResolver().openInputStream(mUri);
+                return Decompressor.open(getContentResolver().openInputStream(mUri));
             URLConnection c = this.getConnection();
-            return c == null ? null : c.getInputStream();
+            return c == null ? null : Decompressor.open(getHttpCache().open(c, mUsername));
         }
 
         @Override
@@ -576,31 +754,23 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
             super(activity, R.string.searching_for_files, false);
         }
 
-        private void search(File root, List<CalendarSource> sources, String... extensions) {
-            if (!root.isFile()) {
-                File[] children = root.listFiles();
-                if (children == null)
-                    return;
-                for (File file: children)
-                    search(file, sources, extensions);
-            }
-            for (String ext: extensions) {
-                if (root.toString().endsWith(ext)) {
-                    try {
-                        final String url = root.toURI().toURL().toString();
-                        sources.add(new CalendarSource(url, null, null, null));
-                    } catch (MalformedURLException e) {
-                        // Can't happen
-                    }
-                }
-            }
-        }
-
         @Override
         protected void run() throws Exception {
-            List<CalendarSource> sources = new ArrayList<>();
-            search(Environment.getExternalStorageDirectory(), sources, "ics", "ical", "icalendar");
-            getActivity().setSources(sources);
+            // Skip other applications' private data and the folders the user excluded
+            File root = Environment.getExternalStorageDirectory();
+            List<File> exclusions = getFolders(root, Settings.PREF_SEARCH_EXCLUSIONS);
+            exclusions.add(new File(root, "Android/data"));
+            exclusions.add(new File(root, "Android/obb"));
+
+            FileScanner scanner = new FileScanner(new File(getCacheDir(), "search_index"),
+                                                  exclusions, CALENDAR_EXTENSIONS);
+            // Keep the files found so far if cancelled
+            mSearchResults = scanner.scan(root);
+            FileWatcher watcher = mFileWatcher;
+            List<File> watched = Collections.emptyList();
+            if (watcher != null)
+                watched = watcher.getFiles();
+            showFiles(watched, true);
         }
     }
 
@@ -609,34 +779,34 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
             super(activity, R.string.reading_file_please_wait, false);
         }
 
-        private void setHint(String key, boolean value) {
-            CompatibilityHints.setHintEnabled(key, value);
-        }
-
         @Override
         protected void run() throws Exception {
-            setHint(CompatibilityHints.KEY_RELAXED_UNFOLDING, mSettings.getIcal4jUnfoldingRelaxed());
-            setHint(CompatibilityHints.KEY_RELAXED_PARSING, mSettings.getIcal4jParsingRelaxed());
-            setHint(CompatibilityHints.KEY_RELAXED_VALIDATION, mSettings.getIcal4jValidationRelaxed());
-            setHint(CompatibilityHints.KEY_OUTLOOK_COMPATIBILITY, mSettings.getIcal4jCompatibilityOutlook());
-            setHint(CompatibilityHints.KEY_NOTES_COMPATIBILITY, mSettings.getIcal4jCompatibilityNotes());
-            setHint(CompatibilityHints.KEY_VCARD_COMPATIBILITY, mSettings.getIcal4jCompatibilityVcard());
-
-            if (mCalendarBuilder == null)
-                mCalendarBuilder = new CalendarBuilder();
-
-            mCalendar = mCalendarBuilder.build(getSelectedURI());
-
+            SettingsActivity.processParserSettings(mSettings);
+
+            // Only count the events here, they are parsed again when processed
+            CalendarSource source = (CalendarSource) mFileSpinner.getSelectedItem();
+            StreamingCalendarBuilder builder = null;
+            if (source != null) {
+                builder = new StreamingCalendarBuilder();
+                InputStream in = closeOnCancel(source.getStream());
+                try {
+                    builder.scan(in);
+                } finally {
+                    in.close();
+                }
+            }
+            mLoadedSource = source;
+            mCalendarBuilder = builder;
 
             runOnUiThread(new Runnable() {
                               public void run() {
-                                  if (mCalendar == null) {
+                                  if (mCalendarBuilder == null) {
                                       mInsertDeleteLayout.setVisibility(View.GONE);
                                       return;
                                   }
 
                                   Resources res = getResources();
-                                  final int n = mCalendar.getComponents(VEvent.VEVENT).size();
+                                  final int n = mCalendarBuilder.getEventCount();
                                   mInsertButton.setText(get(res, R.plurals.insert_n_entries, n));
                                   mDeleteButton.setText(get(res, R.plurals.delete_n_entries, n));
                                   mInsertDeleteLayout.setVisibility(View.VISIBLE);
@@ -671,7 +841,7 @@ public class MainActivity extends FragmentActivity implements View.OnClickListen
                 break;
             case R.id.InsertButton:
             case R.id.DeleteButton:
-                new ProcessVEvent(this, mCalendar, view.getId() == R.id.InsertButton).start();
+                new ProcessVEvent(this, mCalendarBuilder, view.getId() == R.id.InsertButton).start();
                 break;
         }
     }
@@ -17,7 +17,10 @@
 
 package org.sufficientlysecure.ical.ui;
 
+import net.fortuna.ical4j.util.CompatibilityHints;
+
 import org.sufficientlysecure.ical.Settings;
+import org.sufficientlysecure.ical.sync.SyncService;
 import org.sufficientlysecure.ical.util.Log;
 
 import android.content.SharedPreferences;
@@ -38,6 +41,10 @@ public class SettingsActivity extends SettingsActivityBase {
                 new Settings(prefs).putString(Settings.PREF_LASTURLPASSWORD, "");
                 break;
 
+            case Settings.PREF_UPDATE_FREQUENCY:
+                SyncService.schedule(this);
+                break;
+
             case Settings.PREF_DEBUG_LOGGING:
             case Settings.PREF_NET_FORTUNA_ICAL4J_TIMEZONE_UPDATE_ENABLED:
                 processSettings(new Settings(prefs));
@@ -54,4 +61,18 @@ public class SettingsActivity extends SettingsActivityBase {
         String v = settings.getNetFortunaIcal4jTimezoneUpdateEnabled() ? "true" : "false";
         System.setProperty(Settings.PREF_NET_FORTUNA_ICAL4J_TIMEZONE_UPDATE_ENABLED, v);
     }
+
+    // Configure iCal4j's parsing, which must be done before each calendar is read
+    public static void processParserSettings(Settings settings) {
+        setHint(CompatibilityHints.KEY_RELAXED_UNFOLDING, settings.getIcal4jUnfoldingRelaxed());
+        setHint(CompatibilityHints.KEY_RELAXED_PARSING, settings.getIcal4jParsingRelaxed());
+        setHint(CompatibilityHints.KEY_RELAXED_VALIDATION, settings.getIcal4jValidationRelaxed());
+        setHint(CompatibilityHints.KEY_OUTLOOK_COMPATIBILITY, settings.getIcal4jCompatibilityOutlook());
+        setHint(CompatibilityHints.KEY_NOTES_COMPATIBILITY, settings.getIcal4jCompatibilityNotes());
+        setHint(CompatibilityHints.KEY_VCARD_COMPATIBILITY, settings.getIcal4jCompatibilityVcard());
+    }
+
+    private static void setHint(String key, boolean value) {
+        CompatibilityHints.setHintEnabled(key, value);
+    }
 }
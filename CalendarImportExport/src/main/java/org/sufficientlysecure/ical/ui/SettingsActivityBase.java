@@ -40,6 +40,12 @@ public class SettingsActivityBase extends android.preference.PreferenceActivity
                 case Settings.PREF_DUPLICATE_HANDLING:
                     resId = org.sufficientlysecure.ical.R.string.how_to_handle_duplicate_events;
                     break;
+                case Settings.PREF_BATCH_SIZE:
+                    resId = org.sufficientlysecure.ical.R.string.how_many_events_to_write;
+                    break;
+                case Settings.PREF_UPDATE_FREQUENCY:
+                    resId = org.sufficientlysecure.ical.R.string.how_often_to_check_subscribed;
+                    break;
                 default:
                     return;
             }
@@ -53,6 +59,8 @@ public class SettingsActivityBase extends android.preference.PreferenceActivity
         super.onResume();
         getPreferences().registerOnSharedPreferenceChangeListener(this);
         updatePreferenceText(Settings.PREF_DUPLICATE_HANDLING);
+        updatePreferenceText(Settings.PREF_BATCH_SIZE);
+        updatePreferenceText(Settings.PREF_UPDATE_FREQUENCY);
     }
     @Override
     protected void onPause() {
@@ -43,6 +43,7 @@ public class UrlDialog extends DialogFragment {
     private CheckBox mCheckboxLoginRequired;
     private EditText mTextUsername;
     private EditText mTextPassword;
+    private CheckBox mCheckboxSubscribe;
 
     public UrlDialog() {
     }
@@ -70,6 +71,7 @@ public class UrlDialog extends DialogFragment {
         mTextCalendarUrl = (EditText) view.findViewById(R.id.TextCalendarUrl);
         mTextUsername = (EditText) view.findViewById(R.id.TextUsername);
         mTextPassword = (EditText) view.findViewById(R.id.TextPassword);
+        mCheckboxSubscribe = (CheckBox) view.findViewById(R.id.CheckboxSubscribe);
 
         Settings settings = mActivity.getSettings();
         mTextCalendarUrl.setText(settings.getString(Settings.PREF_LASTURL));
@@ -121,20 +123,28 @@ public class UrlDialog extends DialogFragment {
                 boolean loginRequired = mCheckboxLoginRequired.isChecked();
                 String username = loginRequired ? mTextUsername.getText().toString() : "";
                 String password = loginRequired ? mTextPassword.getText().toString() : "";
+                Settings settings = mActivity.getSettings();
+                TextView label = (TextView) dlg.findViewById(R.id.TextViewUrlError);
+
+                if (loginRequired && mCheckboxSubscribe.isChecked() && !settings.getSavePasswords()) {
+                    // Syncing in the background needs the password
+                    label.setText(R.string.subscribing_needs_saved_password);
+                    return;
+                }
 
                 if (!mActivity.setSource(url, null, username, password)) {
-                    TextView label = (TextView) dlg.findViewById(R.id.TextViewUrlError);
                     label.setText(R.string.invalid_url);
                     return;
                 }
 
-                Settings settings = mActivity.getSettings();
                 settings.putString(Settings.PREF_LASTURL, url);
                 if (loginRequired) {
                     settings.putString(Settings.PREF_LASTURLUSERNAME, username);
                     if (settings.getSavePasswords())
                         settings.putString(Settings.PREF_LASTURLPASSWORD, password);
                 }
+                if (mCheckboxSubscribe.isChecked())
+                    mActivity.subscribe(url, username, password);
                 dlg.dismiss();
             }
         };
@@ -18,50 +18,165 @@
 
 package org.sufficientlysecure.ical.ui.dialogs;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.sufficientlysecure.ical.R;
 import org.sufficientlysecure.ical.ui.MainActivity;
 import org.sufficientlysecure.ical.util.Log;
+import org.sufficientlysecure.ical.util.TaskScheduler;
 
 import android.app.ProgressDialog;
+import android.content.DialogInterface;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.view.View;
 
 public abstract class RunnableWithProgress extends ProgressDialog {
     private final MainActivity mActivity;
+    private Future<?> mFuture;
+    private volatile boolean mStarted;
+    private volatile Closeable mCloseOnCancel;
+
+    // Progress is counted here and shown at most every PUBLISH_INTERVAL_MS,
+    // rather than updating the dialog for every item.
+    private static final long PUBLISH_INTERVAL_MS = 100;
+    private String mMessage;
+    private final AtomicInteger mProgress = new AtomicInteger();
+    private final AtomicLong mLastPublishMs = new AtomicLong();
+    private volatile long mStartMs;
+    private volatile boolean mPublishPending;
 
     protected RunnableWithProgress(MainActivity activity, int messageId, boolean isHorizontal) {
         super(activity);
         mActivity = activity;
         setProgressStyle(isHorizontal ? STYLE_HORIZONTAL : STYLE_SPINNER);
         setCancelable(false);
-        setMessage(activity.getString(messageId));
+        mMessage = activity.getString(messageId);
+        mStartMs = SystemClock.elapsedRealtime();
+        setMessage(mMessage);
         setTitle("");
+        // Set a listener so the button is created, it is replaced below
+        setButton(BUTTON_NEGATIVE, activity.getString(android.R.string.cancel),
+                  (DialogInterface.OnClickListener) null);
         show();
+        // Overriding the listener here prevents the button from closing the dialog,
+        // which stays open until the task has stopped.
+        getButton(BUTTON_NEGATIVE).setOnClickListener(new View.OnClickListener() {
+            public void onClick(View view) {
+                view.setEnabled(false);
+                mMessage = getActivity().getString(R.string.cancelling);
+                setMessage(mMessage);
+                cancelTask();
+            }
+        });
     }
 
     public void start() {
-        new Thread(new Runnable() {
+        // Tasks run one at a time, so e.g. a second load waits for the first to finish
+        final String name = getClass().getSimpleName();
+        mFuture = TaskScheduler.getInstance().submit(TaskScheduler.Pool.IO, name, new Runnable() {
                        public void run() {
+                           mStarted = true;
                            try {
                                RunnableWithProgress.this.run();
                            } catch (Exception e) {
-                               Log.e("ICS_RunnableWithProgress", "An exception occurred", e);
-                               DialogTools.info(getActivity(), R.string.error, "Error:\n" + e.getMessage());
+                               if (e instanceof CancellationException || isTaskCancelled()) {
+                                   // Cancelling may also cause errors, e.g. by closing streams
+                                   Log.i("ICS_RunnableWithProgress", name + " was cancelled");
+                               } else {
+                                   Log.e("ICS_RunnableWithProgress", "An exception occurred", e);
+                                   DialogTools.info(getActivity(), R.string.error, "Error:\n" + e.getMessage());
+                               }
                            }
                            cancel();
                        }
-                   }).start();
+                   });
+    }
+
+    // Ask the task to stop. It must check isTaskCancelled() while running.
+    public void cancelTask() {
+        if (mFuture != null)
+            mFuture.cancel(true);
+        if (!mStarted)
+            cancel(); // The task was still queued, so it won't close the dialog itself
+
+        final Closeable closeable = mCloseOnCancel;
+        if (closeable == null)
+            return;
+        // Closing a network stream can block, so don't do it on the UI thread.
+        // The CPU pool may run tasks on the submitting thread when it is busy,
+        // so use a thread of its own.
+        Thread closer = new Thread(new Runnable() {
+                                       public void run() {
+                                           try {
+                                               closeable.close();
+                                           } catch (IOException ignored) {
+                                           }
+                                       }
+                                   }, "ICS-closeOnCancel");
+        closer.setDaemon(true);
+        closer.start();
+    }
+
+    // Close a stream if the task is cancelled, to interrupt blocking reads from it
+    protected <T extends Closeable> T closeOnCancel(T closeable) {
+        mCloseOnCancel = closeable;
+        return closeable;
+    }
+
+    protected boolean isTaskCancelled() {
+        return TaskScheduler.isCancelled();
+    }
+
+    // Stop the task with a CancellationException if it has been cancelled
+    protected void checkCancelled() {
+        TaskScheduler.checkCancelled();
     }
 
     protected MainActivity getActivity() {
         return mActivity;
     }
 
+    @Override
+    public void setMax(int max) {
+        super.setMax(max);
+        mProgress.set(0);
+        mStartMs = SystemClock.elapsedRealtime();
+    }
+
+    // Count an item as processed. May be called from any thread.
     protected void incrementProgress() {
-        mActivity.runOnUiThread(new Runnable() {
-                                    public void run() {
-                                        RunnableWithProgress.this.incrementProgressBy(1);
-                                    }
-                                });
+        final int n = mProgress.incrementAndGet();
+        final long now = SystemClock.elapsedRealtime();
+        final long last = mLastPublishMs.get();
+        if ((now - last >= PUBLISH_INTERVAL_MS || n == getMax())
+            && mLastPublishMs.compareAndSet(last, now) && !mPublishPending) {
+            mPublishPending = true;
+            mActivity.runOnUiThread(mPublishProgress);
+        }
     }
 
+    private final Runnable mPublishProgress = new Runnable() {
+        public void run() {
+            mPublishPending = false;
+            final int n = mProgress.get();
+            setProgress(n);
+
+            final long elapsedMs = SystemClock.elapsedRealtime() - mStartMs;
+            if (getMax() <= 0 || n <= 0 || elapsedMs <= 0)
+                return;
+            final long perSecond = n * 1000L / elapsedMs;
+            final long remainingSecs = (getMax() - n) * elapsedMs / n / 1000L;
+            String eta = DateUtils.formatElapsedTime(Math.max(remainingSecs, 0));
+            setMessage(mMessage + "\n" + mActivity.getString(R.string.n_per_second_remaining,
+                                                               perSecond, eta));
+        }
+    };
+
     protected abstract void run() throws Exception;
 }
@@ -0,0 +1,279 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the files with given extensions in a directory tree.
+ *
+ * Directories are listed in parallel on the CPU pool. The contents of each
+ * directory are saved in an index along with the directory's modification
+ * time, so that later scans only list the directories that have changed.
+ * Hidden and excluded directories are skipped.
+ */
+public final class FileScanner {
+    private static final String TAG = "ICS_FileScanner";
+
+    private static final int INDEX_VERSION = 1;
+
+    // Modification times are coarse on some file systems, so the contents of
+    // recently modified directories are never trusted
+    private static final long MODIFIED_GRANULARITY_MS = 2000;
+
+    private static final long POLL_MS = 10;
+
+    private final File mIndexFile;
+    private final Set<String> mExcludes = new HashSet<>();
+    private final String[] mSuffixes;
+
+    private Map<String, Dir> mIndex;
+    private final Map<String, Dir> mNewIndex = new ConcurrentHashMap<>();
+    private final BlockingQueue<File> mQueue = new LinkedBlockingQueue<>();
+    private final AtomicInteger mPending = new AtomicInteger();
+    private final List<File> mFound = Collections.synchronizedList(new ArrayList<File>());
+    private volatile boolean mStopped;
+
+    // The calendar files and subdirectories of a directory
+    private static final class Dir {
+        private final long mModifiedMs;
+        private final String[] mFiles;
+        private final String[] mDirs;
+
+        public Dir(long modifiedMs, String[] files, String[] dirs) {
+            mModifiedMs = modifiedMs;
+            mFiles = files;
+            mDirs = dirs;
+        }
+    }
+
+    public FileScanner(File indexFile, Collection<File> excludes, String... extensions) {
+        mIndexFile = indexFile;
+        for (File exclude: excludes)
+            mExcludes.add(exclude.getPath());
+        mSuffixes = new String[extensions.length];
+        for (int i = 0; i < extensions.length; i++)
+            mSuffixes[i] = "." + extensions[i].toLowerCase(Locale.US);
+    }
+
+    // Find the matching files below root, sorted by path. If the scan is
+    // cancelled, the files found so far are returned.
+    public List<File> scan(File root) {
+        final long startMs = System.currentTimeMillis();
+        mIndex = loadIndex();
+        mNewIndex.clear();
+        mFound.clear();
+        mStopped = false;
+        mPending.set(1);
+        mQueue.add(root);
+
+        Runnable worker = new Runnable() {
+            public void run() {
+                work();
+            }
+        };
+        TaskScheduler scheduler = TaskScheduler.getInstance();
+        final int numHelpers = Runtime.getRuntime().availableProcessors() - 1;
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 0; i < numHelpers; i++)
+            helpers.add(scheduler.submit(TaskScheduler.Pool.CPU, "FileScanner", worker));
+
+        // The scanning thread also works, and is the one that notices cancellation
+        work();
+
+        for (Future<?> helper: helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                mStopped = true;
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Scan failed", e.getCause());
+            }
+        }
+
+        if (!mStopped)
+            saveIndex();
+        List<File> found = new ArrayList<>(mFound);
+        Collections.sort(found);
+        Log.i(TAG, "Found " + found.size() + " files in " + mNewIndex.size() + " directories, "
+                   + (System.currentTimeMillis() - startMs) + "ms");
+        return found;
+    }
+
+    private void work() {
+        while (!mStopped && mPending.get() > 0) {
+            if (TaskScheduler.isCancelled()) {
+                mStopped = true;
+                return;
+            }
+            File dir;
+            try {
+                dir = mQueue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                mStopped = true;
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (dir == null)
+                continue; // Other workers are still listing directories
+            try {
+                scanDir(dir);
+            } finally {
+                mPending.decrementAndGet();
+            }
+        }
+    }
+
+    private void scanDir(File file) {
+        final String path = file.getPath();
+        final long modifiedMs = file.lastModified();
+        Dir dir = mIndex.get(path);
+        if (dir == null || modifiedMs == 0 || dir.mModifiedMs != modifiedMs)
+            dir = listDir(file, modifiedMs);
+        if (dir == null)
+            return;
+
+        mNewIndex.put(path, dir);
+        for (String name: dir.mFiles)
+            mFound.add(new File(file, name));
+        for (String name: dir.mDirs) {
+            File child = new File(file, name);
+            if (name.startsWith(".") || mExcludes.contains(child.getPath()))
+                continue;
+            mPending.incrementAndGet();
+            mQueue.add(child);
+        }
+    }
+
+    private Dir listDir(File file, long modifiedMs) {
+        File[] children = file.listFiles();
+        if (children == null)
+            return null;
+
+        List<String> files = new ArrayList<>();
+        List<String> dirs = new ArrayList<>();
+        for (File child: children) {
+            final String name = child.getName();
+            if (child.isDirectory())
+                dirs.add(name);
+            else if (matches(name))
+                files.add(name);
+        }
+        if (System.currentTimeMillis() - modifiedMs < MODIFIED_GRANULARITY_MS)
+            modifiedMs = 0; // May change again without its modification time changing
+        return new Dir(modifiedMs, files.toArray(new String[files.size()]),
+                       dirs.toArray(new String[dirs.size()]));
+    }
+
+    private boolean matches(String name) {
+        final String lower = name.toLowerCase(Locale.US);
+        for (String suffix: mSuffixes)
+            if (lower.endsWith(suffix))
+                return true;
+        return false;
+    }
+
+    private Map<String, Dir> loadIndex() {
+        Map<String, Dir> index = new HashMap<>();
+        if (!mIndexFile.exists())
+            return index;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                                                         new FileInputStream(mIndexFile)));
+            try {
+                if (in.readInt() != INDEX_VERSION)
+                    return index;
+                final int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    String path = in.readUTF();
+                    long modifiedMs = in.readLong();
+                    index.put(path, new Dir(modifiedMs, readStrings(in), readStrings(in)));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read index, scanning everything: " + e.getMessage());
+            index.clear();
+        }
+        return index;
+    }
+
+    private void saveIndex() {
+        File temp = new File(mIndexFile.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                                                            new FileOutputStream(temp)));
+            try {
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(mNewIndex.size());
+                for (Map.Entry<String, Dir> e: mNewIndex.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().mModifiedMs);
+                    writeStrings(out, e.getValue().mFiles);
+                    writeStrings(out, e.getValue().mDirs);
+                }
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(mIndexFile))
+                throw new IOException("Failed to rename " + temp);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save index: " + e.getMessage());
+            temp.delete();
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = in.readUTF();
+        return strings;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        out.writeInt(strings.length);
+        for (String s: strings)
+            out.writeUTF(s);
+    }
+}
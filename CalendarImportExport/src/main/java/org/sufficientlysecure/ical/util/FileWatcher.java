@@ -0,0 +1,235 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+
+import android.os.FileObserver;
+
+/**
+ * Keeps a list of the files with given extensions in a set of directory trees
+ * up to date as files are added, removed or renamed.
+ *
+ * The trees are listed once when watching starts, on the CPU pool, and are
+ * then followed with a FileObserver (inotify) on each directory. Hidden
+ * directories are not watched. The listener is called on a background thread
+ * whenever the list changes.
+ */
+public final class FileWatcher {
+    private static final String TAG = "ICS_FileWatcher";
+
+    public interface Listener {
+        void onFilesChanged(List<File> files);
+    }
+
+    // Each watched directory uses an inotify watch, and these are limited
+    private static final int MAX_WATCHED_DIRS = 500;
+
+    private static final int DIR_EVENTS = FileObserver.CREATE | FileObserver.CLOSE_WRITE
+                                          | FileObserver.MOVED_TO | FileObserver.MOVED_FROM
+                                          | FileObserver.DELETE | FileObserver.DELETE_SELF
+                                          | FileObserver.MOVE_SELF;
+
+    private final List<File> mRoots;
+    private final String[] mSuffixes;
+    private final Listener mListener;
+
+    // Guarded by this
+    private final Map<String, DirObserver> mObservers = new HashMap<>();
+    private final Set<File> mFiles = new TreeSet<>();
+    private boolean mWatching;
+    private Future<?> mInitialScan;
+
+    public FileWatcher(Collection<File> roots, Listener listener, String... extensions) {
+        mRoots = new ArrayList<>(roots);
+        mListener = listener;
+        mSuffixes = new String[extensions.length];
+        for (int i = 0; i < extensions.length; i++)
+            mSuffixes[i] = "." + extensions[i].toLowerCase(Locale.US);
+    }
+
+    public synchronized void start() {
+        if (mWatching)
+            return;
+        mWatching = true;
+        Runnable task = new Runnable() {
+            public void run() {
+                final long startMs = System.currentTimeMillis();
+                boolean changed = false;
+                for (File root: mRoots)
+                    changed |= watchTree(root);
+                synchronized (FileWatcher.this) {
+                    Log.i(TAG, "Watching " + mFiles.size() + " files in " + mObservers.size()
+                               + " directories, " + (System.currentTimeMillis() - startMs) + "ms");
+                }
+                if (changed)
+                    notifyListener();
+            }
+        };
+        mInitialScan = TaskScheduler.getInstance().submit(TaskScheduler.Pool.CPU,
+                                                          "FileWatcher", task);
+    }
+
+    public synchronized void stop() {
+        if (!mWatching)
+            return;
+        mWatching = false;
+        mInitialScan.cancel(true);
+        for (DirObserver observer: mObservers.values())
+            observer.stopWatching();
+        mObservers.clear();
+        mFiles.clear();
+    }
+
+    // The watched files, sorted by path
+    public synchronized List<File> getFiles() {
+        return new ArrayList<>(mFiles);
+    }
+
+    // Start watching a directory and its subdirectories, returning whether any
+    // files were found
+    private boolean watchTree(File dir) {
+        if (TaskScheduler.isCancelled())
+            return false;
+        File[] children = dir.listFiles();
+        if (children == null)
+            return false;
+
+        boolean changed = false;
+        synchronized (this) {
+            final String path = dir.getPath();
+            if (!mWatching || mObservers.containsKey(path))
+                return false;
+            if (mObservers.size() >= MAX_WATCHED_DIRS) {
+                Log.w(TAG, "Too many directories, not watching " + path);
+                return false;
+            }
+            DirObserver observer = new DirObserver(dir);
+            mObservers.put(path, observer);
+            observer.startWatching();
+            for (File child: children)
+                if (!child.isDirectory() && matches(child.getName()))
+                    changed |= mFiles.add(child);
+        }
+        // Files created before the observer started are found by the listing
+        for (File child: children)
+            if (child.isDirectory() && !child.getName().startsWith("."))
+                changed |= watchTree(child);
+        return changed;
+    }
+
+    // Stop watching a directory and its subdirectories, returning whether any
+    // files were removed
+    private synchronized boolean unwatchTree(File dir) {
+        final String path = dir.getPath();
+        final String prefix = path + File.separator;
+        boolean changed = false;
+
+        Iterator<Map.Entry<String, DirObserver>> observers = mObservers.entrySet().iterator();
+        while (observers.hasNext()) {
+            Map.Entry<String, DirObserver> e = observers.next();
+            if (e.getKey().equals(path) || e.getKey().startsWith(prefix)) {
+                e.getValue().stopWatching();
+                observers.remove();
+            }
+        }
+        Iterator<File> files = mFiles.iterator();
+        while (files.hasNext()) {
+            if (files.next().getPath().startsWith(prefix)) {
+                files.remove();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void onEvent(File dir, int event, String name) {
+        event &= FileObserver.ALL_EVENTS; // Remove the "is a directory" flag
+        boolean changed = false;
+
+        if (event == FileObserver.DELETE_SELF || event == FileObserver.MOVE_SELF) {
+            changed = unwatchTree(dir);
+        } else if (name != null) {
+            File file = new File(dir, name);
+            switch (event) {
+                case FileObserver.CREATE:
+                case FileObserver.MOVED_TO:
+                case FileObserver.CLOSE_WRITE:
+                    if (file.isDirectory()) {
+                        if (!name.startsWith("."))
+                            changed = watchTree(file);
+                    } else if (matches(name)) {
+                        synchronized (this) {
+                            changed = mWatching && mFiles.add(file);
+                        }
+                    }
+                    break;
+                case FileObserver.DELETE:
+                case FileObserver.MOVED_FROM:
+                    changed = unwatchTree(file);
+                    synchronized (this) {
+                        changed |= mFiles.remove(file);
+                    }
+                    break;
+            }
+        }
+        if (changed)
+            notifyListener();
+    }
+
+    private void notifyListener() {
+        mListener.onFilesChanged(getFiles());
+    }
+
+    private boolean matches(String name) {
+        final String lower = name.toLowerCase(Locale.US);
+        for (String suffix: mSuffixes)
+            if (lower.endsWith(suffix))
+                return true;
+        return false;
+    }
+
+    private final class DirObserver extends FileObserver {
+        private final File mDir;
+
+        public DirObserver(File dir) {
+            super(dir.getPath(), DIR_EVENTS);
+            mDir = dir;
+        }
+
+        @Override
+        public void onEvent(int event, String path) {
+            try {
+                FileWatcher.this.onEvent(mDir, event, path);
+            } catch (RuntimeException e) {
+                // Don't kill the thread that all observers share
+                Log.e(TAG, "Failed to handle change in " + mDir, e);
+            }
+        }
+    }
+}
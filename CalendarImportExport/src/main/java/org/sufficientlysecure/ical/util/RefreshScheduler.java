@@ -0,0 +1,99 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.util;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+/**
+ * Runs a refresh task on a background thread, coalescing bursts of requests.
+ *
+ * Requests made within the debounce delay of each other result in a single run,
+ * but a run is never put off for more than the maximum wait after the first
+ * request, so that continuous requests still cause regular runs.
+ * Runs never overlap; a request made while the task is running causes one more
+ * run after it finishes.
+ */
+public final class RefreshScheduler {
+    // The default maximum wait, in debounce delays
+    private static final int MAX_WAIT_DELAYS = 4;
+
+    private static final long NOT_PENDING = -1;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final Runnable mTask;
+    private final long mDelayMs;
+    private final long mMaxWaitMs;
+    private long mFirstRequestMs = NOT_PENDING; // When the pending run was first requested
+
+    private final Runnable mRun = new Runnable() {
+        public void run() {
+            synchronized (RefreshScheduler.this) {
+                mFirstRequestMs = NOT_PENDING;
+            }
+            mTask.run();
+        }
+    };
+
+    public RefreshScheduler(String name, long delayMs, Runnable task) {
+        this(name, delayMs, delayMs * MAX_WAIT_DELAYS, task);
+    }
+
+    public RefreshScheduler(String name, long delayMs, long maxWaitMs, Runnable task) {
+        mThread = new HandlerThread(name);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mTask = task;
+        mDelayMs = delayMs;
+        mMaxWaitMs = maxWaitMs;
+    }
+
+    // Run the task once no further request has been made for the debounce delay,
+    // or once the maximum wait has passed since the first pending request
+    public synchronized void request() {
+        final long now = SystemClock.uptimeMillis();
+        if (mFirstRequestMs == NOT_PENDING)
+            mFirstRequestMs = now;
+        schedule(getDelay(now, mFirstRequestMs, mDelayMs, mMaxWaitMs));
+    }
+
+    // Run the task as soon as possible, replacing any pending request
+    public synchronized void requestNow() {
+        mFirstRequestMs = SystemClock.uptimeMillis();
+        schedule(0);
+    }
+
+    // Stop the background thread. Pending requests are dropped.
+    public synchronized void quit() {
+        mHandler.removeCallbacks(mRun);
+        mThread.quit();
+    }
+
+    // How long to wait before running, given when the pending run was first requested
+    static long getDelay(long now, long firstRequestMs, long delayMs, long maxWaitMs) {
+        final long remainingMs = firstRequestMs + maxWaitMs - now;
+        return Math.max(0, Math.min(delayMs, remainingMs));
+    }
+
+    private void schedule(long delayMs) {
+        mHandler.removeCallbacks(mRun);
+        mHandler.postDelayed(mRun, delayMs);
+    }
+}
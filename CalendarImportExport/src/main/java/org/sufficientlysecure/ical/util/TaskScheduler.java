@@ -0,0 +1,174 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * Runs background work on shared, named worker pools instead of new threads.
+ *
+ * The IO pool has a single worker, so tasks that read or write calendars and
+ * files run one at a time in the order they were submitted. The CPU pool has
+ * one worker per processor and a bounded queue; when the queue is full the
+ * submitting thread runs the task itself, which throttles producers.
+ *
+ * Tasks are cancelled by interrupting them, so long running tasks should call
+ * checkCancelled() regularly.
+ */
+public final class TaskScheduler {
+    private static final String TAG = "ICS_TaskScheduler";
+
+    public enum Pool { IO, CPU }
+
+    private static final int CPU_QUEUE_SIZE = 64;
+
+    private static TaskScheduler sInstance;
+
+    private final PoolExecutor mIo;
+    private final PoolExecutor mCpu;
+
+    private TaskScheduler() {
+        mIo = new PoolExecutor("io", 1, new LinkedBlockingQueue<Runnable>());
+        final int numCpus = Math.max(1, Runtime.getRuntime().availableProcessors());
+        mCpu = new PoolExecutor("cpu", numCpus, new ArrayBlockingQueue<Runnable>(CPU_QUEUE_SIZE));
+        mCpu.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public static synchronized TaskScheduler getInstance() {
+        if (sInstance == null)
+            sInstance = new TaskScheduler();
+        return sInstance;
+    }
+
+    public Future<?> submit(Pool pool, String name, Runnable task) {
+        return submit(pool, name, Executors.callable(task));
+    }
+
+    public <T> Future<T> submit(Pool pool, String name, Callable<T> task) {
+        PoolExecutor executor = getExecutor(pool);
+        Task<T> t = new Task<>(executor, name, task);
+        executor.execute(t);
+        return t;
+    }
+
+    // The number of tasks waiting to run in a pool
+    public int getQueueDepth(Pool pool) {
+        return getExecutor(pool).getQueue().size();
+    }
+
+    // A summary of each pool's load and task latency, for diagnostics
+    public String getStats() {
+        return mIo.getStats() + "; " + mCpu.getStats();
+    }
+
+    // Whether the task running on the current thread has been cancelled
+    public static boolean isCancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    // Stop the task running on the current thread if it has been cancelled
+    public static void checkCancelled() {
+        if (isCancelled())
+            throw new CancellationException();
+    }
+
+    private PoolExecutor getExecutor(Pool pool) {
+        return pool == Pool.IO ? mIo : mCpu;
+    }
+
+    private static final class PoolExecutor extends ThreadPoolExecutor {
+        private final String mName;
+        private final AtomicLong mNumRun = new AtomicLong();
+        private final AtomicLong mTotalWaitMs = new AtomicLong();
+        private final AtomicLong mTotalRunMs = new AtomicLong();
+        private final AtomicLong mMaxWaitMs = new AtomicLong();
+
+        public PoolExecutor(final String name, int numThreads, BlockingQueue<Runnable> queue) {
+            super(numThreads, numThreads, 30, TimeUnit.SECONDS, queue, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                public Thread newThread(final Runnable r) {
+                    Runnable background = new Runnable() {
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    };
+                    return new Thread(background, "ICS-" + name + "-" + mCount.incrementAndGet());
+                }
+            });
+            mName = name;
+            allowCoreThreadTimeOut(true);
+        }
+
+        public void record(String taskName, long waitMs, long runMs) {
+            mNumRun.incrementAndGet();
+            mTotalWaitMs.addAndGet(waitMs);
+            mTotalRunMs.addAndGet(runMs);
+            long max = mMaxWaitMs.get();
+            while (waitMs > max && !mMaxWaitMs.compareAndSet(max, waitMs))
+                max = mMaxWaitMs.get();
+            Log.d(TAG, taskName + " waited " + waitMs + "ms, ran " + runMs + "ms; " + getStats());
+        }
+
+        public String getStats() {
+            final long n = Math.max(1, mNumRun.get());
+            return mName + ": " + getActiveCount() + " active, " + getQueue().size() + " queued, "
+                   + mNumRun.get() + " run, wait avg " + mTotalWaitMs.get() / n + "ms max "
+                   + mMaxWaitMs.get() + "ms, run avg " + mTotalRunMs.get() / n + "ms";
+        }
+    }
+
+    private static final class Task<T> extends FutureTask<T> {
+        private final PoolExecutor mExecutor;
+        private final String mName;
+        private final long mQueuedMs = SystemClock.elapsedRealtime();
+
+        public Task(PoolExecutor executor, String name, Callable<T> callable) {
+            super(callable);
+            mExecutor = executor;
+            mName = name;
+        }
+
+        @Override
+        public void run() {
+            final long startMs = SystemClock.elapsedRealtime();
+            try {
+                super.run();
+            } finally {
+                final long endMs = SystemClock.elapsedRealtime();
+                mExecutor.record(mName, startMs - mQueuedMs, endMs - startMs);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.sufficientlysecure.ical.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RefreshSchedulerTest {
+    private static final long DELAY_MS = 500;
+    private static final long MAX_WAIT_MS = 2000;
+
+    private static long getDelay(long now, long firstRequestMs) {
+        return RefreshScheduler.getDelay(now, firstRequestMs, DELAY_MS, MAX_WAIT_MS);
+    }
+
+    // The time the task runs if count requests are made every intervalMs from time 0
+    private static long runTime(long intervalMs, int count) {
+        long runMs = getDelay(0, 0);
+        for (long now = intervalMs; now < runMs && now < count * intervalMs; now += intervalMs)
+            runMs = now + getDelay(now, 0);
+        return runMs;
+    }
+
+    @Test
+    public void waitsForTheDelayAfterASingleRequest() {
+        assertEquals(DELAY_MS, getDelay(1000, 1000));
+    }
+
+    @Test
+    public void debouncesABurstOfRequests() {
+        assertEquals(400 + DELAY_MS, runTime(200, 3)); // Requests at 0, 200 and 400
+        assertEquals(DELAY_MS, getDelay(1400, 1000));
+    }
+
+    @Test
+    public void runsAfterTheMaxWaitWhileRequestsContinue() {
+        assertEquals(MAX_WAIT_MS, runTime(100, Integer.MAX_VALUE));
+        assertEquals(MAX_WAIT_MS, runTime(DELAY_MS - 1, Integer.MAX_VALUE));
+        assertEquals(100, getDelay(1900, 0));
+    }
+
+    @Test
+    public void runsNowOnceTheMaxWaitHasPassed() {
+        assertEquals(0, getDelay(MAX_WAIT_MS, 0));
+        assertEquals(0, getDelay(MAX_WAIT_MS + 1000, 0));
+        assertTrue(getDelay(MAX_WAIT_MS - 1, 0) > 0);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.CalScale;
+import net.fortuna.ical4j.model.property.Method;
+import net.fortuna.ical4j.model.property.ProdId;
+import net.fortuna.ical4j.model.property.Version;
+import net.fortuna.ical4j.util.CompatibilityHints;
+
+import org.sufficientlysecure.ical.EventColumns;
+import org.sufficientlysecure.ical.EventConverter;
+import org.sufficientlysecure.ical.EventValues;
+import org.sufficientlysecure.ical.MemoryEventStore;
+import org.sufficientlysecure.ical.StreamingCalendarBuilder;
+
+// Test data and setup shared by the benchmarks
+final class Calendars {
+    // The number of events in each benchmark calendar. Benchmarks process every
+    // event once per invocation, so their scores are in events per second.
+    static final int EVENTS = 1000;
+
+    static final long CALENDAR_ID = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String[] ZONES = { "Europe/London", "America/New_York", "Asia/Tokyo" };
+
+    // Discards everything written to it, so writing costs only the serialization
+    static final OutputStream NULL_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private Calendars() {
+    }
+
+    // Configure ical4j as the app does with its default settings
+    static void init() {
+        System.setProperty("net.fortuna.ical4j.timezone.update.enabled", "false");
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_RELAXED_UNFOLDING, true);
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_RELAXED_PARSING, true);
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_RELAXED_VALIDATION, true);
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_OUTLOOK_COMPATIBILITY, true);
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_NOTES_COMPATIBILITY, true);
+    }
+
+    // A calendar of typical events: all-day events, timed events in a few
+    // timezones, weekly meetings, and UTC events with an organizer and a reminder
+    static byte[] create(int numEvents) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("BEGIN:VCALENDAR\r\n");
+        sb.append("VERSION:2.0\r\n");
+        sb.append("PRODID:-//iCal Import/Export//Benchmark//EN\r\n");
+        for (int i = 0; i < numEvents; i++) {
+            final String date = String.format(Locale.US, "2026%02d%02d",
+                                              1 + (i / 28) % 12, 1 + i % 28);
+            final String zone = ZONES[i % ZONES.length];
+            sb.append("BEGIN:VEVENT\r\n");
+            sb.append("UID:event-").append(i).append("@benchmark.example\r\n");
+            sb.append("DTSTAMP:20260101T000000Z\r\n");
+            sb.append("SUMMARY:Event ").append(i).append("\r\n");
+            sb.append("DESCRIPTION:The description of event ").append(i).append("\r\n");
+            switch (i % 4) {
+                case 0:
+                    sb.append("DTSTART;VALUE=DATE:").append(date).append("\r\n");
+                    sb.append("DTEND;VALUE=DATE:").append(date.substring(0, 6))
+                      .append(String.format(Locale.US, "%02d", 2 + i % 28)).append("\r\n");
+                    sb.append("TRANSP:TRANSPARENT\r\n");
+                    break;
+                case 1:
+                    sb.append("DTSTART;TZID=").append(zone).append(':').append(date)
+                      .append("T090000\r\n");
+                    sb.append("DTEND;TZID=").append(zone).append(':').append(date)
+                      .append("T100000\r\n");
+                    sb.append("LOCATION:Room ").append(i % 10).append("\r\n");
+                    break;
+                case 2:
+                    sb.append("DTSTART;TZID=").append(zone).append(':').append(date)
+                      .append("T140000\r\n");
+                    sb.append("DURATION:PT30M\r\n");
+                    sb.append("RRULE:FREQ=WEEKLY;COUNT=10\r\n");
+                    sb.append("STATUS:CONFIRMED\r\n");
+                    break;
+                default:
+                    sb.append("DTSTART:").append(date).append("T160000Z\r\n");
+                    sb.append("DTEND:").append(date).append("T170000Z\r\n");
+                    sb.append("ORGANIZER:mailto:organizer@benchmark.example\r\n");
+                    sb.append("CLASS:PRIVATE\r\n");
+                    sb.append("BEGIN:VALARM\r\n");
+                    sb.append("TRIGGER:-PT15M\r\n");
+                    sb.append("ACTION:DISPLAY\r\n");
+                    sb.append("DESCRIPTION:Reminder\r\n");
+                    sb.append("END:VALARM\r\n");
+                    break;
+            }
+            sb.append("END:VEVENT\r\n");
+        }
+        sb.append("END:VCALENDAR\r\n");
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    static List<VEvent> parse(byte[] calendar) throws Exception {
+        final List<VEvent> events = new ArrayList<>();
+        StreamingCalendarBuilder builder = new StreamingCalendarBuilder();
+        builder.scan(new ByteArrayInputStream(calendar));
+        builder.build(new ByteArrayInputStream(calendar),
+                      new StreamingCalendarBuilder.EventHandler() {
+                          public void onEvent(VEvent e) {
+                              events.add(e);
+                          }
+                      });
+        return events;
+    }
+
+    // Convert events to rows as an import does, adding them to values
+    static List<EventValues> convert(List<VEvent> events, EventConverter converter,
+                                     List<List<Integer>> reminders) {
+        List<EventValues> values = new ArrayList<>(events.size());
+        for (VEvent e: events) {
+            List<Integer> eventReminders = new ArrayList<>();
+            EventValues v = converter.toValues(e, eventReminders);
+            v.put(EventColumns.CALENDAR_ID, CALENDAR_ID);
+            values.add(v);
+            reminders.add(eventReminders);
+        }
+        return values;
+    }
+
+    // A store holding the benchmark calendar, standing in for the calendar provider
+    static MemoryEventStore createStore(EventConverter converter) throws Exception {
+        List<List<Integer>> reminders = new ArrayList<>();
+        List<EventValues> values = convert(parse(create(EVENTS)), converter, reminders);
+        MemoryEventStore store = new MemoryEventStore();
+        for (int i = 0; i < values.size(); i++)
+            store.insertEvent(values.get(i), reminders.get(i));
+        return store;
+    }
+
+    // The header the app writes for an exported calendar
+    static PropertyList createHeader() {
+        PropertyList header = new PropertyList();
+        header.add(new ProdId("-//iCal Import/Export//Benchmark//EN"));
+        header.add(Version.VERSION_2_0);
+        header.add(Method.PUBLISH);
+        header.add(CalScale.GREGORIAN);
+        return header;
+    }
+}
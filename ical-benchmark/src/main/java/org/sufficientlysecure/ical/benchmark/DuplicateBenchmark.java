@@ -0,0 +1,96 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.sufficientlysecure.ical.DuplicateIndex;
+import org.sufficientlysecure.ical.EventColumns;
+import org.sufficientlysecure.ical.EventConverter;
+import org.sufficientlysecure.ical.EventRow;
+import org.sufficientlysecure.ical.EventStore;
+import org.sufficientlysecure.ical.EventValues;
+import org.sufficientlysecure.ical.MemoryEventStore;
+import org.sufficientlysecure.ical.TimeZoneCache;
+
+// Resolving duplicates when importing a calendar again over itself, by UID or
+// by start time and title. Loading reads the existing events of the calendar
+// into an index, as ProviderEventStore.loadDuplicateIndex() does, and finding
+// looks up each imported event in it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DuplicateBenchmark {
+    @Param({ "true", "false" })
+    public boolean useUids;
+
+    private MemoryEventStore mStore;
+    private List<EventValues> mEvents;
+    private DuplicateIndex mIndex;
+
+    @Setup
+    public void setUp() throws Exception {
+        Calendars.init();
+        EventConverter converter = new EventConverter(TimeZoneCache.getInstance());
+        mStore = Calendars.createStore(converter);
+        mEvents = Calendars.convert(Calendars.parse(Calendars.create(Calendars.EVENTS)),
+                                    converter, new ArrayList<List<Integer>>());
+        mIndex = load();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Calendars.EVENTS)
+    public DuplicateIndex load() throws Exception {
+        final DuplicateIndex index = new DuplicateIndex(useUids, false);
+        mStore.readEvents(new EventStore.Visitor() {
+            public void onStart(int numEvents) {
+            }
+
+            public void onEvent(EventRow event, List<EventRow> reminders) {
+                index.add(event.getLong(EventColumns._ID), event);
+            }
+        });
+        return index;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Calendars.EVENTS)
+    public void find(Blackhole bh) {
+        for (EventValues event: mEvents)
+            bh.consume(mIndex.find(event));
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.DtStamp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.sufficientlysecure.ical.CalendarWriter;
+import org.sufficientlysecure.ical.EventConverter;
+import org.sufficientlysecure.ical.EventRow;
+import org.sufficientlysecure.ical.EventStore;
+import org.sufficientlysecure.ical.MemoryEventStore;
+import org.sufficientlysecure.ical.TimeZoneCache;
+
+// Converting calendar rows to events, and serializing events as ICS text. The
+// rows are read from a MemoryEventStore standing in for the calendar provider,
+// and the output is discarded after encoding.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportBenchmark {
+    private MemoryEventStore mStore;
+    private EventConverter mConverter;
+    private List<VEvent> mEvents;
+    private final DtStamp mTimestamp = new DtStamp();
+
+    @Setup
+    public void setUp() throws Exception {
+        Calendars.init();
+        mConverter = new EventConverter(TimeZoneCache.getInstance());
+        mStore = Calendars.createStore(mConverter);
+        mEvents = new ArrayList<>(Calendars.EVENTS);
+        mStore.readEvents(new EventStore.Visitor() {
+            public void onStart(int numEvents) {
+            }
+
+            public void onEvent(EventRow event, List<EventRow> reminders) {
+                List<TimeZoneCache.Entry> timeZones = new ArrayList<>(2);
+                mEvents.add(mConverter.toVEvent(event, reminders, timeZones, mTimestamp));
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Calendars.EVENTS)
+    public void toVEvent(final Blackhole bh) throws Exception {
+        mStore.readEvents(new EventStore.Visitor() {
+            public void onStart(int numEvents) {
+            }
+
+            public void onEvent(EventRow event, List<EventRow> reminders) {
+                List<TimeZoneCache.Entry> timeZones = new ArrayList<>(2);
+                bh.consume(mConverter.toVEvent(event, reminders, timeZones, mTimestamp));
+            }
+        });
+    }
+
+    // Validating and writing already converted events
+    @Benchmark
+    @OperationsPerInvocation(Calendars.EVENTS)
+    public void serialize() throws Exception {
+        CalendarWriter out = new CalendarWriter(Calendars.NULL_STREAM, Calendars.createHeader());
+        try {
+            for (VEvent e: mEvents)
+                out.write(e);
+        } finally {
+            out.close();
+        }
+    }
+
+    // A whole export: each row is converted, validated and written after the
+    // timezones it uses, as SaveCalendar does on a single core
+    @Benchmark
+    @OperationsPerInvocation(Calendars.EVENTS)
+    public void exportEvents() throws Exception {
+        final CalendarWriter out = new CalendarWriter(Calendars.NULL_STREAM,
+                                                      Calendars.createHeader());
+        final Set<TimeZoneCache.Entry> writtenTimeZones = new HashSet<>();
+        try {
+            mStore.readEvents(new EventStore.Visitor() {
+                public void onStart(int numEvents) {
+                }
+
+                public void onEvent(EventRow event, List<EventRow> reminders)
+                    throws Exception {
+                    List<TimeZoneCache.Entry> timeZones = new ArrayList<>(2);
+                    VEvent e = mConverter.toVEvent(event, reminders, timeZones, mTimestamp);
+                    String text = out.format(e);
+                    for (TimeZoneCache.Entry tz: timeZones)
+                        if (tz.getVTimeZone() != null && writtenTimeZones.add(tz))
+                            out.writeValidated(tz.getVTimeZone());
+                    out.writeValidated(text);
+                }
+            });
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.sufficientlysecure.ical.DuplicateIndex;
+import org.sufficientlysecure.ical.EventColumns;
+import org.sufficientlysecure.ical.EventConverter;
+import org.sufficientlysecure.ical.EventValues;
+import org.sufficientlysecure.ical.MemoryEventStore;
+import org.sufficientlysecure.ical.TimeZoneCache;
+
+// Converting parsed events to calendar rows, and importing them into an empty
+// calendar. MemoryEventStore stands in for the calendar provider.
+//
+// EventConverter.toValues() normalises the DTEND and DURATION of events in
+// place, so after the first invocation the events it converts are already
+// normalised.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+    private List<VEvent> mEvents;
+    private EventConverter mConverter;
+
+    @Setup
+    public void setUp() throws Exception {
+        Calendars.init();
+        mEvents = Calendars.parse(Calendars.create(Calendars.EVENTS));
+        mConverter = new EventConverter(TimeZoneCache.getInstance());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Calendars.EVENTS)
+    public void toValues(Blackhole bh) {
+        for (VEvent e: mEvents)
+            bh.consume(mConverter.toValues(e, new ArrayList<Integer>()));
+    }
+
+    // Each event is converted, checked for duplicates and inserted, as
+    // CalendarImporter does
+    @Benchmark
+    @OperationsPerInvocation(Calendars.EVENTS)
+    public MemoryEventStore importEvents() {
+        MemoryEventStore store = new MemoryEventStore();
+        DuplicateIndex index = new DuplicateIndex(true, false);
+        for (VEvent e: mEvents) {
+            List<Integer> reminders = new ArrayList<>();
+            EventValues values = mConverter.toValues(e, reminders);
+            values.put(EventColumns.CALENDAR_ID, Calendars.CALENDAR_ID);
+            if (index.find(values).isEmpty())
+                index.add(store.insertEvent(values, reminders), values);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.sufficientlysecure.ical.StreamingCalendarBuilder;
+
+// Parsing a large calendar file into events, with the ical4j builder that
+// keeps the whole calendar and with the streaming builder the app uses
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+    private byte[] mCalendar;
+
+    @Setup
+    public void setUp() {
+        Calendars.init();
+        mCalendar = Calendars.create(Calendars.EVENTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Calendars.EVENTS)
+    public Calendar calendarBuilder() throws Exception {
+        return new CalendarBuilder().build(new ByteArrayInputStream(mCalendar));
+    }
+
+    // Scans the file for timezones and then builds the events one at a time,
+    // as an import does
+    @Benchmark
+    @OperationsPerInvocation(Calendars.EVENTS)
+    public void streamingBuilder(final Blackhole bh) throws Exception {
+        StreamingCalendarBuilder builder = new StreamingCalendarBuilder();
+        builder.scan(new ByteArrayInputStream(mCalendar));
+        builder.build(new ByteArrayInputStream(mCalendar),
+                      new StreamingCalendarBuilder.EventHandler() {
+                          public void onEvent(VEvent e) {
+                              bh.consume(e);
+                          }
+                      });
+    }
+}
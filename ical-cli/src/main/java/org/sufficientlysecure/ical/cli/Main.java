@@ -0,0 +1,230 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical.cli;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.ValidationException;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.CalScale;
+import net.fortuna.ical4j.model.property.DtStamp;
+import net.fortuna.ical4j.model.property.Method;
+import net.fortuna.ical4j.model.property.ProdId;
+import net.fortuna.ical4j.model.property.Version;
+import net.fortuna.ical4j.util.CompatibilityHints;
+
+import org.sufficientlysecure.ical.CalendarWriter;
+import org.sufficientlysecure.ical.EventColumns;
+import org.sufficientlysecure.ical.EventConverter;
+import org.sufficientlysecure.ical.EventRow;
+import org.sufficientlysecure.ical.EventStore;
+import org.sufficientlysecure.ical.EventValues;
+import org.sufficientlysecure.ical.MemoryEventStore;
+import org.sufficientlysecure.ical.StreamingCalendarBuilder;
+import org.sufficientlysecure.ical.TimeZoneCache;
+
+// Merges or validates calendar files on the JVM. Each event is converted to a
+// calendar row and back with the same engine as the app, so the output is what
+// the app would give by importing the files into an empty calendar and
+// exporting it. Events with the UID of an earlier event are skipped, and events
+// without a UID are given one as the app would.
+public final class Main {
+    private static final String USAGE =
+        "usage: ical-cli [-v] [-o OUTPUT] INPUT...\n"
+        + "  -o OUTPUT  write the merged calendar to OUTPUT instead of standard output\n"
+        + "  -v         only check that the events convert and validate\n";
+
+    private final EventConverter mConverter = new EventConverter(TimeZoneCache.getInstance());
+    private final MemoryEventStore mStore = new MemoryEventStore();
+    private final Set<String> mUids = new HashSet<>();
+    // Generated UIDs take the same <ms><uuid>@sufficientlysecure.org form as the app's
+    private final String mUidSuffix = UUID.randomUUID().toString().replace("-", "")
+                                      + "@sufficientlysecure.org";
+    private long mNextUidMs = System.currentTimeMillis();
+    private int mNumRead;
+    private int mNumDuplicates;
+    private int mNumSkipped;
+    private int mNumInvalid;
+    private int mNumWritten;
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    private static int run(String[] args) {
+        String output = null;
+        boolean validateOnly = false;
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length)
+                output = args[++i];
+            else if (args[i].equals("-v"))
+                validateOnly = true;
+            else if (args[i].startsWith("-") && !args[i].equals("-")) {
+                System.err.print(USAGE);
+                return 2;
+            } else
+                inputs.add(args[i]);
+        }
+        if (inputs.isEmpty() || (validateOnly && output != null)) {
+            System.err.print(USAGE);
+            return 2;
+        }
+
+        // The defaults of the app's settings
+        System.setProperty("net.fortuna.ical4j.timezone.update.enabled", "false");
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_RELAXED_UNFOLDING, true);
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_RELAXED_PARSING, true);
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_RELAXED_VALIDATION, true);
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_OUTLOOK_COMPATIBILITY, true);
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_NOTES_COMPATIBILITY, true);
+
+        Main main = new Main();
+        boolean ok = true;
+        for (String input: inputs)
+            ok &= main.read(input);
+
+        OutputStream out = null;
+        try {
+            if (validateOnly)
+                out = new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                    }
+                };
+            else if (output == null || output.equals("-"))
+                out = System.out;
+            else
+                out = new FileOutputStream(output);
+            main.write(out);
+        } catch (Exception e) {
+            System.err.println((output == null ? "-" : output) + ": " + e);
+            ok = false;
+        }
+
+        System.err.println("Read " + main.mNumRead + " events from " + inputs.size()
+                           + " files, skipped " + main.mNumDuplicates + " duplicates and "
+                           + main.mNumSkipped + " unsupported events, "
+                           + (validateOnly ? "validated " : "wrote ") + main.mNumWritten
+                           + " events, " + main.mNumInvalid + " invalid");
+        return ok && main.mNumInvalid == 0 ? 0 : 1;
+    }
+
+    // Import the events of a file, returning false if it couldn't be parsed
+    private boolean read(final String input) {
+        StreamingCalendarBuilder builder = new StreamingCalendarBuilder();
+        try {
+            // Timezones may follow the events that use them, so find them first
+            try (InputStream in = open(input)) {
+                builder.scan(in);
+            }
+            try (InputStream in = open(input)) {
+                builder.build(in, new StreamingCalendarBuilder.EventHandler() {
+                    public void onEvent(VEvent e) {
+                        add(e);
+                    }
+                });
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println(input + ": " + e);
+            return false;
+        }
+    }
+
+    private void add(VEvent e) {
+        mNumRead++;
+        List<Integer> reminders = new ArrayList<>();
+        EventValues values = mConverter.toValues(e, reminders);
+        if (values == null) {
+            mNumSkipped++;
+            return;
+        }
+        String uid = values.getString(EventColumns.UID_2445);
+        if (uid == null) {
+            uid = (mNextUidMs++) + mUidSuffix;
+            values.put(EventColumns.UID_2445, uid);
+        }
+        if (!mUids.add(uid)) {
+            mNumDuplicates++;
+            return;
+        }
+        mStore.insertEvent(values, reminders);
+    }
+
+    private void write(OutputStream stream) throws Exception {
+        PropertyList header = new PropertyList();
+        header.add(new ProdId("-//iCal Import/Export//Command Line//EN"));
+        header.add(Version.VERSION_2_0);
+        header.add(Method.PUBLISH);
+        header.add(CalScale.GREGORIAN);
+
+        final CalendarWriter out = new CalendarWriter(stream, header);
+        final DtStamp timestamp = new DtStamp(); // Same timestamp for all events
+        final Set<TimeZoneCache.Entry> writtenTimeZones = new HashSet<>();
+        try {
+            mStore.readEvents(new EventStore.Visitor() {
+                public void onStart(int numEvents) {
+                }
+
+                public void onEvent(EventRow event, List<EventRow> reminders)
+                    throws IOException {
+                    List<TimeZoneCache.Entry> timeZones = new ArrayList<>(2);
+                    VEvent e = mConverter.toVEvent(event, reminders, timeZones, timestamp);
+                    if (e == null) {
+                        mNumSkipped++;
+                        return;
+                    }
+                    String text;
+                    try {
+                        text = out.format(e);
+                    } catch (ValidationException except) {
+                        System.err.println("Invalid event " + event.getString(EventColumns.UID_2445)
+                                           + ": " + except.getMessage());
+                        mNumInvalid++;
+                        return;
+                    }
+                    for (TimeZoneCache.Entry tz: timeZones)
+                        if (tz.getVTimeZone() != null && writtenTimeZones.add(tz))
+                            out.writeValidated(tz.getVTimeZone());
+                    out.writeValidated(text);
+                    mNumWritten++;
+                }
+            });
+        } finally {
+            out.close();
+        }
+    }
+
+    private static InputStream open(String input) throws IOException {
+        if (input.equals("-"))
+            throw new IOException("Standard input can't be read twice, use a file");
+        return new BufferedInputStream(new FileInputStream(input));
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+import net.fortuna.ical4j.data.FoldingWriter;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.ValidationException;
+import net.fortuna.ical4j.model.component.CalendarComponent;
+import net.fortuna.ical4j.model.property.Method;
+import net.fortuna.ical4j.util.CompatibilityHints;
+import net.fortuna.ical4j.util.PropertyValidator;
+
+// Writes an iCalendar stream one component at a time, as a replacement for
+// CalendarOutputter that does not need the whole Calendar in memory.
+// Components are validated as they are written, as CalendarOutputter would.
+public class CalendarWriter implements Closeable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String LINE_END = "\r\n";
+
+    private final FoldingWriter mWriter;
+    private final Method mMethod;
+    private int mNumComponents;
+
+    // Write the calendar header. The properties must include PRODID and VERSION.
+    public CalendarWriter(OutputStream out, PropertyList properties)
+        throws IOException, ValidationException {
+        // Check the header as Calendar.validate() would
+        PropertyValidator validator = PropertyValidator.getInstance();
+        validator.assertOne(Property.PRODID, properties);
+        validator.assertOne(Property.VERSION, properties);
+        validator.assertOneOrLess(Property.CALSCALE, properties);
+        validator.assertOneOrLess(Property.METHOD, properties);
+        for (Object p: properties)
+            ((Property) p).validate();
+
+        final int foldLength = CompatibilityHints.isHintEnabled(
+            CompatibilityHints.KEY_OUTLOOK_COMPATIBILITY) ? FoldingWriter.MAX_FOLD_LENGTH
+                                                          : FoldingWriter.REDUCED_FOLD_LENGTH;
+        mWriter = new FoldingWriter(new BufferedWriter(new OutputStreamWriter(out, UTF_8)),
+                                    foldLength);
+        mMethod = (Method) properties.getProperty(Property.METHOD);
+
+        mWriter.write(Calendar.BEGIN + ':' + Calendar.VCALENDAR + LINE_END);
+        mWriter.write(properties.toString());
+    }
+
+    public void write(CalendarComponent component) throws IOException, ValidationException {
+        writeValidated(format(component));
+    }
+
+    // Validate a component and return its text for writeValidated(). This
+    // doesn't touch the output, so may be called from any thread.
+    public String format(CalendarComponent component) throws ValidationException {
+        if (mMethod != null)
+            component.validate(mMethod);
+        component.validate();
+        return component.toString();
+    }
+
+    // Write the text of a component that has already been validated
+    public void writeValidated(String component) throws IOException {
+        mWriter.write(component);
+        mNumComponents++;
+    }
+
+    // The number of components written so far
+    public int getNumComponents() {
+        return mNumComponents;
+    }
+
+    // Write the calendar footer and close the underlying stream
+    public void close() throws IOException {
+        try {
+            mWriter.write(Calendar.END + ':' + Calendar.VCALENDAR + LINE_END);
+        } finally {
+            mWriter.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// An in-memory index of existing events, used to find duplicates of imported
+// events without querying the event store once per event.
+public class DuplicateIndex {
+    // The id of an entry whose event has not been inserted yet
+    public static final long NO_ID = -1;
+
+    public static final class Entry {
+        public final long mCalendarId;
+        public long mId;
+        private final String mUid;
+        private final String mStartKey;
+
+        private Entry(long calendarId, long id, String uid, String startKey) {
+            mCalendarId = calendarId;
+            mId = id;
+            mUid = uid;
+            mStartKey = startKey;
+        }
+    }
+
+    private final boolean mUseUids;
+    private final boolean mGlobalUids;
+    private final Map<String, List<Entry>> mByUid = new HashMap<>();
+    private final Map<String, List<Entry>> mByStart = new HashMap<>();
+    private int mSize;
+
+    // useUids must be false if the store doesn't have UIDs
+    public DuplicateIndex(boolean useUids, boolean globalUids) {
+        mUseUids = useUids;
+        mGlobalUids = globalUids;
+    }
+
+    // Find the events that the given event values duplicate
+    public List<Entry> find(EventRow c) {
+        final long calendarId = c.getLong(EventColumns.CALENDAR_ID);
+        final String uid = getUid(c);
+        List<Entry> result = new ArrayList<>();
+
+        if (uid != null) {
+            // Use our UID to match, either globally or per-calendar unique
+            for (Entry entry: get(mByUid, uid))
+                if (mGlobalUids || entry.mCalendarId == calendarId)
+                    result.add(entry);
+            return result;
+        }
+
+        // Without UIDs, the best we can do is check the start date and title within
+        // the current calendar, even though this may return false duplicates.
+        if (!c.isNull(EventColumns.DTSTART)) {
+            final long start = c.getLong(EventColumns.DTSTART);
+            String key = getStartKey(calendarId, start, c.getString(EventColumns.TITLE));
+            result.addAll(get(mByStart, key));
+        }
+        return result;
+    }
+
+    // Add an event that is being inserted. Use NO_ID if its id is not yet known.
+    public Entry add(long id, EventRow c) {
+        Long start = c.isNull(EventColumns.DTSTART) ? null : c.getLong(EventColumns.DTSTART);
+        return add(c.getLong(EventColumns.CALENDAR_ID), id, getUid(c),
+                   start, c.getString(EventColumns.TITLE));
+    }
+
+    // Replace the entry of an event that has been updated to the given values.
+    // The event keeps its id and calendar.
+    public Entry update(Entry entry, EventRow c) {
+        remove(entry);
+        Long start = c.isNull(EventColumns.DTSTART) ? null : c.getLong(EventColumns.DTSTART);
+        return add(entry.mCalendarId, entry.mId, getUid(c), start, c.getString(EventColumns.TITLE));
+    }
+
+    public void remove(Entry entry) {
+        if (entry.mUid != null)
+            removeFrom(mByUid, entry.mUid, entry);
+        if (entry.mStartKey != null)
+            removeFrom(mByStart, entry.mStartKey, entry);
+        mSize--;
+    }
+
+    // Whether events are matched by their UIDs
+    public boolean usesUids() {
+        return mUseUids;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    // Add an existing event, such as when loading the index from a store
+    public Entry add(long calendarId, long id, String uid, Long start, String title) {
+        if (!mUseUids || uid == null || uid.length() == 0)
+            uid = null;
+        String startKey = start == null ? null : getStartKey(calendarId, start, title);
+        Entry entry = new Entry(calendarId, id, uid, startKey);
+        if (uid != null)
+            addTo(mByUid, uid, entry);
+        if (startKey != null)
+            addTo(mByStart, startKey, entry);
+        mSize++;
+        return entry;
+    }
+
+    private String getUid(EventRow c) {
+        if (!mUseUids)
+            return null;
+        return c.getString(EventColumns.UID_2445);
+    }
+
+    private static String getStartKey(long calendarId, long start, String title) {
+        // Distinguish a missing title from any actual title
+        return calendarId + ":" + start + (title == null ? "!" : ":" + title);
+    }
+
+    private static List<Entry> get(Map<String, List<Entry>> map, String key) {
+        List<Entry> entries = map.get(key);
+        return entries == null ? Collections.<Entry>emptyList() : entries;
+    }
+
+    private static void addTo(Map<String, List<Entry>> map, String key, Entry entry) {
+        List<Entry> entries = map.get(key);
+        if (entries == null) {
+            entries = new ArrayList<>(1);
+            map.put(key, entries);
+        }
+        entries.add(entry);
+    }
+
+    private static void removeFrom(Map<String, List<Entry>> map, String key, Entry entry) {
+        List<Entry> entries = map.get(key);
+        if (entries != null) {
+            entries.remove(entry);
+            if (entries.isEmpty())
+                map.remove(key);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+// The columns of event and reminder rows, as named by the Android calendar
+// provider. Stores whose columns are named differently translate them.
+public final class EventColumns {
+    public static final String _ID = "_id";
+    public static final String CALENDAR_ID = "calendar_id";
+    public static final String ORIGINAL_ID = "original_id";
+    public static final String UID_2445 = "uid2445";
+    public static final String TITLE = "title";
+    public static final String DESCRIPTION = "description";
+    public static final String ORGANIZER = "organizer";
+    public static final String GUESTS_CAN_MODIFY = "guestsCanModify";
+    public static final String EVENT_LOCATION = "eventLocation";
+    public static final String STATUS = "eventStatus";
+    public static final String ALL_DAY = "allDay";
+    public static final String DTSTART = "dtstart";
+    public static final String EVENT_TIMEZONE = "eventTimezone";
+    public static final String DTEND = "dtend";
+    public static final String EVENT_END_TIMEZONE = "eventEndTimezone";
+    public static final String DURATION = "duration";
+    public static final String ACCESS_LEVEL = "accessLevel";
+    public static final String AVAILABILITY = "availability";
+    public static final String RRULE = "rrule";
+    public static final String RDATE = "rdate";
+    public static final String EXRULE = "exrule";
+    public static final String EXDATE = "exdate";
+    public static final String CUSTOM_APP_PACKAGE = "customAppPackage";
+    public static final String CUSTOM_APP_URI = "customAppUri";
+    public static final String HAS_ALARM = "hasAlarm";
+
+    public static final int STATUS_TENTATIVE = 0;
+    public static final int STATUS_CONFIRMED = 1;
+    public static final int STATUS_CANCELED = 2;
+
+    public static final int ACCESS_DEFAULT = 0;
+    public static final int ACCESS_CONFIDENTIAL = 1;
+    public static final int ACCESS_PRIVATE = 2;
+    public static final int ACCESS_PUBLIC = 3;
+
+    public static final int AVAILABILITY_BUSY = 0;
+    public static final int AVAILABILITY_FREE = 1;
+    public static final int AVAILABILITY_TENTATIVE = 2;
+
+    // Reminder rows
+    public static final String EVENT_ID = "event_id";
+    public static final String MINUTES = "minutes";
+    public static final String METHOD = "method";
+
+    public static final int METHOD_DEFAULT = 0;
+    public static final int METHOD_ALERT = 1;
+
+    private EventColumns() {
+    }
+}
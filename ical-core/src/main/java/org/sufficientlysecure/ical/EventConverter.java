@@ -0,0 +1,531 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import net.fortuna.ical4j.model.component.VAlarm;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.Date;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Dur;
+import net.fortuna.ical4j.model.Parameter;
+import net.fortuna.ical4j.model.parameter.FbType;
+import net.fortuna.ical4j.model.parameter.Related;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyFactoryImpl;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.property.Action;
+import net.fortuna.ical4j.model.property.DateProperty;
+import net.fortuna.ical4j.model.property.Description;
+import net.fortuna.ical4j.model.property.DtEnd;
+import net.fortuna.ical4j.model.property.DtStamp;
+import net.fortuna.ical4j.model.property.DtStart;
+import net.fortuna.ical4j.model.property.Duration;
+import net.fortuna.ical4j.model.property.FreeBusy;
+import net.fortuna.ical4j.model.property.Organizer;
+import net.fortuna.ical4j.model.property.Transp;
+import net.fortuna.ical4j.model.property.Trigger;
+
+// Converts between iCalendar events and the event rows of an EventStore. This
+// holds no per-calendar state, so one converter may be used by several threads
+// provided each converts different events.
+public final class EventConverter {
+    private static final Logger LOG = Logger.getLogger("ICS_EventConverter");
+
+    private static final long SECOND_MS = 1000;
+    private static final long MINUTE_MS = 60 * SECOND_MS;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    private static final long WEEK_MS = 7 * DAY_MS;
+
+    private static final String MAILTO = "mailto:";
+
+    private static final List<String> STATUS_ENUM = Arrays.asList("TENTATIVE", "CONFIRMED", "CANCELLED");
+    private static final List<String> CLASS_ENUM = Arrays.asList(null, "CONFIDENTIAL", "PRIVATE", "PUBLIC");
+    private static final List<String> AVAIL_ENUM = Arrays.asList(null, "FREE", "BUSY-TENTATIVE");
+
+    private final PropertyFactoryImpl mPropertyFactory = PropertyFactoryImpl.getInstance();
+    private final TimeZoneCache mTimeZones;
+    private final Set<String> mFailedOrganisers = Collections.synchronizedSet(new HashSet<String>());
+
+    public EventConverter(TimeZoneCache timeZones) {
+        mTimeZones = timeZones;
+    }
+
+    // Munge a VEvent so Android won't reject it, then convert it to the values of an
+    // event row. The minutes before the start of each of its reminders are added to
+    // reminders. Returns null if the event can't be imported.
+    public EventValues toValues(VEvent e, List<Integer> reminders) {
+        reminders.clear();
+
+        if (e.getRecurrenceId() != null) {
+            // FIXME: Support these edited instances
+            LOG.warning("Ignoring edited instance of a recurring event");
+            return null;
+        }
+
+        boolean allDay = false;
+        boolean startIsDate = !(e.getStartDate().getDate() instanceof DateTime);
+        boolean isRecurring = hasProperty(e, Property.RRULE) || hasProperty(e, Property.RDATE);
+
+        if (startIsDate) {
+            // If the start date is a DATE we expect the end date to be a date too and the
+            // event is all-day, midnight to midnight (RFC 2445).
+            allDay = true;
+        }
+
+        if (!hasProperty(e, Property.DTEND) && !hasProperty(e, Property.DURATION)) {
+            // No end date or duration given.
+            // Since we added a duration above when the start date is a DATE:
+            // - The start date is a DATETIME, the event lasts no time at all (RFC 2445).
+            e.getProperties().add(createDuration("PT0S"));
+            // Zero time events are always free (RFC 2445), so override/set TRANSP accordingly.
+            removeProperty(e, Property.TRANSP);
+            e.getProperties().add(Transp.TRANSPARENT);
+        }
+
+        if (isRecurring) {
+            // Recurring event. Android insists on a duration.
+            if (!hasProperty(e, Property.DURATION)) {
+                // Calculate duration from start to end date
+                Duration d = new Duration(e.getStartDate().getDate(), e.getEndDate().getDate());
+                e.getProperties().add(d);
+            }
+            removeProperty(e, Property.DTEND);
+        } else {
+            // Non-recurring event. Android insists on an end date.
+            if (!hasProperty(e, Property.DTEND)) {
+                // Calculate end date from duration, set it and remove the duration.
+                e.getProperties().add(e.getEndDate());
+            }
+            removeProperty(e, Property.DURATION);
+        }
+
+        // Now calculate the db values for the event
+        EventValues c = new EventValues();
+
+        copyProperty(c, EventColumns.TITLE, e, Property.SUMMARY);
+        copyProperty(c, EventColumns.DESCRIPTION, e, Property.DESCRIPTION);
+
+        if (e.getOrganizer() != null) {
+            String uri = e.getOrganizer().getCalAddress().toString();
+            String address = parseMailTo(uri);
+            if (address != null) {
+                c.put(EventColumns.ORGANIZER, address);
+                c.put(EventColumns.GUESTS_CAN_MODIFY, 1); // Ensure we can edit if not the organiser
+            } else
+                LOG.severe("Failed to parse Organiser URI " + uri);
+        }
+
+        copyProperty(c, EventColumns.EVENT_LOCATION, e, Property.LOCATION);
+
+        if (hasProperty(e, Property.STATUS)) {
+            String status = e.getProperty(Property.STATUS).getValue();
+            switch (status) {
+                case "TENTATIVE":
+                    c.put(EventColumns.STATUS, EventColumns.STATUS_TENTATIVE);
+                    break;
+                case "CONFIRMED":
+                    c.put(EventColumns.STATUS, EventColumns.STATUS_CONFIRMED);
+                    break;
+                case "CANCELLED":  // NOTE: In ical4j it is CANCELLED with two L
+                    c.put(EventColumns.STATUS, EventColumns.STATUS_CANCELED);
+                    break;
+            }
+        }
+
+        copyProperty(c, EventColumns.DURATION, e, Property.DURATION);
+
+        if (allDay)
+            c.put(EventColumns.ALL_DAY, 1);
+
+        copyDateProperty(c, EventColumns.DTSTART, EventColumns.EVENT_TIMEZONE, e.getStartDate());
+        if (hasProperty(e, Property.DTEND))
+            copyDateProperty(c, EventColumns.DTEND, EventColumns.EVENT_END_TIMEZONE, e.getEndDate());
+
+        if (hasProperty(e, Property.CLASS)) {
+            String access = e.getProperty(Property.CLASS).getValue();
+            int accessLevel = EventColumns.ACCESS_DEFAULT;
+            switch (access) {
+                case "CONFIDENTIAL":
+                    accessLevel = EventColumns.ACCESS_CONFIDENTIAL;
+                    break;
+                case "PRIVATE":
+                    accessLevel = EventColumns.ACCESS_PRIVATE;
+                    break;
+                case "PUBLIC":
+                    accessLevel = EventColumns.ACCESS_PUBLIC;
+                    break;
+            }
+
+            c.put(EventColumns.ACCESS_LEVEL, accessLevel);
+        }
+
+        // Work out availability. This is confusing as FREEBUSY and TRANSP overlap.
+        int availability = EventColumns.AVAILABILITY_BUSY;
+        if (hasProperty(e, Property.TRANSP)) {
+            if (e.getTransparency() == Transp.TRANSPARENT)
+                availability = EventColumns.AVAILABILITY_FREE;
+
+        } else if (hasProperty(e, Property.FREEBUSY)) {
+            FreeBusy fb = (FreeBusy) e.getProperty(Property.FREEBUSY);
+            FbType fbType = (FbType) fb.getParameter(Parameter.FBTYPE);
+            if (fbType != null && fbType == FbType.FREE)
+                availability = EventColumns.AVAILABILITY_FREE;
+            else if (fbType != null && fbType == FbType.BUSY_TENTATIVE)
+                availability = EventColumns.AVAILABILITY_TENTATIVE;
+        }
+        c.put(EventColumns.AVAILABILITY, availability);
+
+        copyProperty(c, EventColumns.RRULE, e, Property.RRULE);
+        copyProperty(c, EventColumns.RDATE, e, Property.RDATE);
+        copyProperty(c, EventColumns.EXRULE, e, Property.EXRULE);
+        copyProperty(c, EventColumns.EXDATE, e, Property.EXDATE);
+        copyProperty(c, EventColumns.CUSTOM_APP_URI, e, Property.URL);
+        copyProperty(c, EventColumns.UID_2445, e, Property.UID);
+        if (c.containsKey(EventColumns.UID_2445) && isEmpty(c.getString(EventColumns.UID_2445))) {
+            // Remove null/empty UIDs
+            c.remove(EventColumns.UID_2445);
+        }
+
+        for (Object alarm: e.getAlarms()) {
+            VAlarm a = (VAlarm) alarm;
+
+            if (a.getAction() != Action.AUDIO && a.getAction() != Action.DISPLAY)
+                continue; // Ignore email and procedure alarms
+
+            Trigger t = a.getTrigger();
+            final long startMs = e.getStartDate().getDate().getTime();
+            long alarmStartMs = startMs;
+            long alarmMs;
+
+            // FIXME: - Support for repeating alarms
+            //        - Check the calendars max number of alarms
+            if (t.getDateTime() != null)
+                alarmMs = t.getDateTime().getTime(); // Absolute
+            else if (t.getDuration() != null && t.getDuration().isNegative()) {
+                Related rel = (Related) t.getParameter(Parameter.RELATED);
+                if (rel != null && rel == Related.END)
+                    alarmStartMs = e.getEndDate().getDate().getTime();
+                alarmMs = alarmStartMs - durationToMs(t.getDuration()); // Relative
+            } else {
+                continue;
+            }
+
+            int reminder = (int) ((startMs - alarmMs) / MINUTE_MS);
+            if (reminder >= 0 && !reminders.contains(reminder))
+                reminders.add(reminder);
+        }
+
+        // FIXME: Attendees, SELF_ATTENDEE_STATUS
+        return c;
+    }
+
+    // Convert an event row and its reminder rows to a VEvent, adding the timezones
+    // its dates use to timeZones. Returns null if the event can't be exported.
+    public VEvent toVEvent(EventRow row, List<EventRow> reminders,
+                           List<TimeZoneCache.Entry> timeZones, DtStamp timestamp) {
+        if (hasStringValue(row, EventColumns.ORIGINAL_ID)) {
+            // FIXME: Support these edited instances
+            LOG.warning("Ignoring edited instance of a recurring event");
+            return null;
+        }
+
+        PropertyList l = new PropertyList();
+        l.add(timestamp);
+        copyProperty(l, Property.UID, row, EventColumns.UID_2445);
+
+        String summary = copyProperty(l, Property.SUMMARY, row, EventColumns.TITLE);
+        String description = copyProperty(l, Property.DESCRIPTION, row, EventColumns.DESCRIPTION);
+
+        String organizer = row.getString(EventColumns.ORGANIZER);
+        if (!isEmpty(organizer)) {
+            // The check for mailto: here handles early versions of this code which
+            // incorrectly left it in the organizer column.
+            if (!organizer.startsWith(MAILTO))
+                organizer = MAILTO + organizer;
+            try {
+                l.add(new Organizer(organizer));
+            } catch (URISyntaxException ignored) {
+                if (mFailedOrganisers.add(organizer))
+                    LOG.severe("Failed to create mailTo for organizer " + organizer);
+             }
+        }
+
+        copyProperty(l, Property.LOCATION, row, EventColumns.EVENT_LOCATION);
+        copyEnumProperty(l, Property.STATUS, row, EventColumns.STATUS, STATUS_ENUM);
+
+        boolean allDay = "1".equals(row.getString(EventColumns.ALL_DAY));
+        boolean isTransparent;
+        DtEnd dtEnd = null;
+
+        if (allDay) {
+            // All day event
+            isTransparent = true;
+            Date start = getDateTime(row, EventColumns.DTSTART, null, null);
+            Date end = getDateTime(row, EventColumns.DTEND, null, null);
+            l.add(new DtStart(new Date(start)));
+
+            if (end != null) {
+                dtEnd = new DtEnd(new Date(end));
+            } else {
+                dtEnd = new DtEnd(utcDateFromMs(start.getTime() + DAY_MS));
+            }
+
+            l.add(dtEnd);
+        } else {
+            // Regular or zero-time event. Start date must be a date-time
+            Date startDate = getDateTime(row, EventColumns.DTSTART, EventColumns.EVENT_TIMEZONE,
+                                         timeZones);
+            l.add(new DtStart(startDate));
+
+            // Use duration if we have one, otherwise end date
+            if (hasStringValue(row, EventColumns.DURATION)) {
+                isTransparent = row.getString(EventColumns.DURATION).equals("PT0S");
+                if (!isTransparent) {
+                    copyProperty(l, Property.DURATION, row, EventColumns.DURATION);
+                }
+            } else {
+                Date end = getDateTime(row, EventColumns.DTEND, EventColumns.EVENT_END_TIMEZONE,
+                                       timeZones);
+                dtEnd = new DtEnd(end);
+                isTransparent = startDate.getTime() == end.getTime();
+                if (!isTransparent) {
+                    l.add(dtEnd);
+                }
+            }
+        }
+
+        copyEnumProperty(l, Property.CLASS, row, EventColumns.ACCESS_LEVEL, CLASS_ENUM);
+
+        int availability = row.getInt(EventColumns.AVAILABILITY);
+        if (availability > EventColumns.AVAILABILITY_TENTATIVE)
+            availability = -1;     // Unknown/Invalid
+
+        if (isTransparent) {
+            // This event is ordinarily transparent. If availability shows that its
+            // not free, then mark it opaque.
+            if (availability >= 0 && availability != EventColumns.AVAILABILITY_FREE)
+                l.add(Transp.OPAQUE);
+
+        } else if (availability > EventColumns.AVAILABILITY_BUSY) {
+            // This event is ordinarily busy but differs, so output a FREEBUSY
+            // period covering the time of the event
+            FreeBusy fb = new FreeBusy();
+            fb.getParameters().add(new FbType(AVAIL_ENUM.get(availability)));
+            DateTime start = new DateTime(((DtStart) l.getProperty(Property.DTSTART)).getDate());
+
+            if (dtEnd != null)
+                fb.getPeriods().add(new Period(start, new DateTime(dtEnd.getDate())));
+            else {
+                Duration d = (Duration) l.getProperty(Property.DURATION);
+                fb.getPeriods().add(new Period(start, d.getDuration()));
+            }
+            l.add(fb);
+        }
+
+        copyProperty(l, Property.RRULE, row, EventColumns.RRULE);
+        copyProperty(l, Property.RDATE, row, EventColumns.RDATE);
+        copyProperty(l, Property.EXRULE, row, EventColumns.EXRULE);
+        copyProperty(l, Property.EXDATE, row, EventColumns.EXDATE);
+        if (isEmpty(row.getString(EventColumns.CUSTOM_APP_PACKAGE))) {
+            // Only copy URL if there is no app i.e. we probably imported it.
+            copyProperty(l, Property.URL, row, EventColumns.CUSTOM_APP_URI);
+        }
+
+        VEvent e = new VEvent(l);
+
+        if (row.getInt(EventColumns.HAS_ALARM) == 1) {
+            // Add alarms
+
+            String s = summary == null ? (description == null ? "" : description) : summary;
+            Description desc = new Description(s);
+
+            for (EventRow alarm: reminders)
+                addAlarm(e, alarm, desc);
+        }
+
+        return e;
+    }
+
+    private void addAlarm(VEvent e, EventRow alarm, Description desc) {
+        int mins = alarm.getInt(EventColumns.MINUTES);
+        if (mins == -1)
+            mins = 60;     // FIXME: Get the real default
+
+        // FIXME: We should support other types if possible
+        int method = alarm.getInt(EventColumns.METHOD);
+        if (method == EventColumns.METHOD_DEFAULT || method == EventColumns.METHOD_ALERT) {
+            VAlarm vAlarm = new VAlarm(new Dur(0, 0, -mins, 0));
+            vAlarm.getProperties().add(Action.DISPLAY);
+            vAlarm.getProperties().add(desc);
+            e.getAlarms().add(vAlarm);
+        }
+    }
+
+    private Date utcDateFromMs(long ms) {
+        // This date will be UTC provided the default false value of the iCal4j property
+        // "net.fortuna.ical4j.timezone.date.floating" has not been changed.
+        return new Date(ms);
+    }
+
+    // Read a date, adding its timezone to timeZones. Dates are read as date-only
+    // dates in UTC if timeZones is null.
+    private Date getDateTime(EventRow row, String dbName, String dbTzName,
+                             List<TimeZoneCache.Entry> timeZones) {
+        if (row.isNull(dbName)) {
+            LOG.severe("No valid " + dbName + " column found");
+            return null;
+        }
+
+        if (timeZones == null)
+            return utcDateFromMs(row.getLong(dbName));     // Ignore timezone for date-only dates
+
+        TimeZoneCache.Entry tz = mTimeZones.get(row.getString(dbTzName));
+        final boolean isUtc = tz.isUtc();
+
+        DateTime dt = new DateTime(isUtc);
+        if (dt.isUtc() != isUtc)
+            throw new RuntimeException("UTC mismatch after construction");
+        dt.setTime(row.getLong(dbName));
+        if (dt.isUtc() != isUtc)
+            throw new RuntimeException("UTC mismatch after setTime");
+
+        if (!isUtc) {
+            if (tz.getTimeZone() == null)
+                LOG.severe("Unknown TZ " + tz.getId() + ", assuming UTC");
+            else {
+                dt.setTimeZone(tz.getTimeZone());
+                if (!timeZones.contains(tz))
+                    timeZones.add(tz);
+            }
+        }
+        return dt;
+    }
+
+    private String copyProperty(PropertyList l, String evName, EventRow row, String dbName) {
+        // None of the exceptions caught below should be able to be thrown AFAICS.
+        try {
+            String value = row.getString(dbName);
+            if (value != null) {
+                Property p = mPropertyFactory.createProperty(evName);
+                p.setValue(value);
+                l.add(p);
+                return value;
+            }
+        } catch (IOException | URISyntaxException | ParseException ignored) {
+        }
+        return null;
+    }
+
+    private void copyEnumProperty(PropertyList l, String evName, EventRow row, String dbName,
+                                     List<String> vals) {
+        // None of the exceptions caught below should be able to be thrown AFAICS.
+        try {
+            if (!row.isNull(dbName)) {
+                int value = (int) row.getLong(dbName);
+                if (value >= 0 && value < vals.size() && vals.get(value) != null) {
+                    Property p = mPropertyFactory.createProperty(evName);
+                    p.setValue(vals.get(value));
+                    l.add(p);
+                }
+            }
+        } catch (IOException | URISyntaxException | ParseException ignored) {
+        }
+    }
+
+    private static Duration createDuration(String value) {
+        Duration d = new Duration();
+        d.setValue(value);
+        return d;
+    }
+
+    private static long durationToMs(Dur d) {
+        long ms = 0;
+        ms += d.getSeconds() * SECOND_MS;
+        ms += d.getMinutes() * MINUTE_MS;
+        ms += d.getHours()   * HOUR_MS;
+        ms += d.getDays()    * DAY_MS;
+        ms += d.getWeeks()   * WEEK_MS;
+        return ms;
+    }
+
+    // The address of a mailto: URI, or null if it isn't one
+    private static String parseMailTo(String uri) {
+        if (!uri.toLowerCase(Locale.US).startsWith(MAILTO))
+            return null;
+        String to = uri.substring(MAILTO.length());
+        int query = to.indexOf('?');
+        if (query >= 0)
+            to = to.substring(0, query);
+        try {
+            // URLDecoder also decodes '+', which isn't an escape in URIs
+            return URLDecoder.decode(to.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.length() == 0;
+    }
+
+    private static boolean hasStringValue(EventRow row, String dbName) {
+        return !isEmpty(row.getString(dbName));
+    }
+
+    private static boolean hasProperty(VEvent e, String name) {
+        return e.getProperty(name) != null;
+    }
+
+    private static void removeProperty(VEvent e, String name) {
+        Property p = e.getProperty(name);
+        if (p != null)
+            e.getProperties().remove(p);
+    }
+
+    private static void copyProperty(EventValues c, String dbName, VEvent e, String evName) {
+        Property p = e.getProperty(evName);
+        if (p != null)
+            c.put(dbName, p.getValue());
+    }
+
+    private static void copyDateProperty(EventValues c, String dbName, String dbTzName,
+                                         DateProperty date) {
+        if (date.getDate() != null) {
+            c.put(dbName, date.getDate().getTime()); // ms since epoc in GMT
+            if (date.isUtc() || date.getTimeZone() == null)
+                c.put(dbTzName, "UTC");
+            else
+                c.put(dbTzName, date.getTimeZone().getID());
+        }
+    }
+}
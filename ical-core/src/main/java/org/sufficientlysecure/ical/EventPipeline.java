@@ -0,0 +1,82 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+// Passes events from a reader thread to a writer thread in order, holding at
+// most a fixed number so that the reader can't get far ahead of the writer.
+//
+// The writer must call close() once it stops taking events, whether it
+// finished, failed or was cancelled. This discards the waiting events and
+// stops the reader: a put() waiting for space returns, and later ones throw
+// CancellationException, so the reader never waits on a pipeline that nothing
+// will drain.
+public final class EventPipeline<T> {
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> mQueue;
+    private volatile boolean mClosed;
+
+    public EventPipeline(int capacity) {
+        mQueue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    // Add an event, waiting while the pipeline is full. Called by the reader.
+    public void put(T event) throws InterruptedException {
+        if (mClosed)
+            throw new CancellationException();
+        mQueue.put(event);
+    }
+
+    // Mark the end of the events. Called by the reader when it stops, even if
+    // it failed. This doesn't wait once the writer has closed the pipeline, and
+    // isn't stopped by interruption, as the writer would wait forever without it.
+    public void finish() {
+        boolean interrupted = false;
+        try {
+            while (!mClosed) {
+                try {
+                    mQueue.put(END);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    // Take the next event, waiting for the reader, or return null once all the
+    // events have been taken. Called by the writer.
+    @SuppressWarnings("unchecked")
+    public T take() throws InterruptedException {
+        Object event = mQueue.take();
+        return event == END ? null : (T) event;
+    }
+
+    // Stop the reader and discard the waiting events. Called by the writer.
+    public void close() {
+        mClosed = true;
+        mQueue.clear();
+    }
+}
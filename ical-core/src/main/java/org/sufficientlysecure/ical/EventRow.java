@@ -0,0 +1,34 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+// A row of event or reminder values, read by the EventColumns names. Columns
+// that the row doesn't have read as null, or -1 for numbers.
+public interface EventRow {
+    boolean isNull(String column);
+
+    String getString(String column);
+
+    long getLong(String column);
+
+    int getInt(String column);
+
+    // A copy of the row that stays valid when its store moves to the next row,
+    // and that can be read from any thread
+    EventRow snapshot();
+}
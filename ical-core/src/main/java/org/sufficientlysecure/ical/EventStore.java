@@ -0,0 +1,41 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.List;
+
+// Where the events of a calendar are kept, such as the Android calendar provider
+// or memory. The store holds the rows that EventConverter converts to and from
+// iCalendar events.
+public interface EventStore {
+    interface Visitor {
+        // Called once before the events, with the number that will follow
+        void onStart(int numEvents) throws Exception;
+
+        // The event row is only valid during the call; use EventRow.snapshot()
+        // to keep it. The reminders may be kept.
+        void onEvent(EventRow event, List<EventRow> reminders) throws Exception;
+    }
+
+    // Visit every event in the store, in increasing id order
+    void readEvents(Visitor visitor) throws Exception;
+
+    // Add an event with alert reminders at the given minutes before its start,
+    // returning its id or -1 if the store rejected it
+    long insertEvent(EventValues event, List<Integer> reminders) throws Exception;
+}
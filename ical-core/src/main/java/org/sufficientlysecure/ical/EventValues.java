@@ -0,0 +1,103 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// The values of an event or reminder row, in the style of Android's ContentValues.
+// Values keep the type they were put with, so stores can write them as such.
+public final class EventValues implements EventRow {
+    private final Map<String, Object> mValues;
+
+    public EventValues() {
+        mValues = new LinkedHashMap<>();
+    }
+
+    private EventValues(Map<String, Object> values) {
+        mValues = new LinkedHashMap<>(values);
+    }
+
+    public void put(String column, String value) {
+        mValues.put(column, value);
+    }
+
+    public void put(String column, Integer value) {
+        mValues.put(column, value);
+    }
+
+    public void put(String column, Long value) {
+        mValues.put(column, value);
+    }
+
+    public boolean containsKey(String column) {
+        return mValues.containsKey(column);
+    }
+
+    public Object get(String column) {
+        return mValues.get(column);
+    }
+
+    public void remove(String column) {
+        mValues.remove(column);
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+
+    public Set<Map.Entry<String, Object>> valueSet() {
+        return mValues.entrySet();
+    }
+
+    public boolean isNull(String column) {
+        return mValues.get(column) == null;
+    }
+
+    public String getString(String column) {
+        Object value = mValues.get(column);
+        return value == null ? null : value.toString();
+    }
+
+    public long getLong(String column) {
+        Object value = mValues.get(column);
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        if (value == null)
+            return -1;
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public int getInt(String column) {
+        return (int) getLong(column);
+    }
+
+    public EventValues snapshot() {
+        return new EventValues(mValues);
+    }
+
+    @Override
+    public String toString() {
+        return mValues.toString();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// An event store held in memory, for processing calendars without a device
+public final class MemoryEventStore implements EventStore {
+    private final List<EventValues> mEvents = new ArrayList<>();
+    private final List<List<EventRow>> mReminders = new ArrayList<>();
+
+    public synchronized int size() {
+        return mEvents.size();
+    }
+
+    public synchronized void readEvents(Visitor visitor) throws Exception {
+        visitor.onStart(mEvents.size());
+        for (int i = 0; i < mEvents.size(); i++)
+            visitor.onEvent(mEvents.get(i), mReminders.get(i));
+    }
+
+    public synchronized long insertEvent(EventValues event, List<Integer> reminders) {
+        final long id = mEvents.size() + 1;
+        EventValues values = event.snapshot();
+        values.put(EventColumns._ID, id);
+        values.put(EventColumns.HAS_ALARM, reminders.isEmpty() ? 0 : 1);
+
+        List<EventRow> alarms = new ArrayList<>(reminders.size());
+        for (int minutes: reminders) {
+            EventValues alarm = new EventValues();
+            alarm.put(EventColumns.EVENT_ID, id);
+            alarm.put(EventColumns.MINUTES, minutes);
+            alarm.put(EventColumns.METHOD, EventColumns.METHOD_ALERT);
+            alarms.add(alarm);
+        }
+        mEvents.add(values);
+        mReminders.add(Collections.unmodifiableList(alarms));
+        return id;
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import net.fortuna.ical4j.data.CalendarParser;
+import net.fortuna.ical4j.data.CalendarParserFactory;
+import net.fortuna.ical4j.data.ContentHandler;
+import net.fortuna.ical4j.data.ParserException;
+import net.fortuna.ical4j.data.UnfoldingReader;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentFactory;
+import net.fortuna.ical4j.model.Escapable;
+import net.fortuna.ical4j.model.Parameter;
+import net.fortuna.ical4j.model.ParameterFactory;
+import net.fortuna.ical4j.model.ParameterFactoryRegistry;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyFactory;
+import net.fortuna.ical4j.model.PropertyFactoryRegistry;
+import net.fortuna.ical4j.model.TimeZone;
+import net.fortuna.ical4j.model.TimeZoneRegistry;
+import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.component.VTimeZone;
+import net.fortuna.ical4j.model.parameter.TzId;
+import net.fortuna.ical4j.model.property.DateListProperty;
+import net.fortuna.ical4j.model.property.DateProperty;
+import net.fortuna.ical4j.model.property.XProperty;
+import net.fortuna.ical4j.util.Constants;
+import net.fortuna.ical4j.util.Strings;
+
+// Parses an iCalendar stream one component at a time, passing each VEVENT to a
+// handler as soon as it is complete instead of building the whole Calendar.
+// Only VTIMEZONEs are kept in memory. Since they may follow the events that use
+// them, streams are first scanned to count events and collect their timezones.
+public class StreamingCalendarBuilder {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public interface EventHandler {
+        void onEvent(VEvent event) throws Exception;
+    }
+
+    // Carries handler exceptions through the parser so they can be rethrown as-is
+    private static final class HandlerException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public HandlerException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private final CalendarParser mParser = CalendarParserFactory.getInstance().createParser();
+    private final List<VTimeZone> mTimeZones = new ArrayList<>();
+    private int mEventCount;
+
+    // Count the VEVENTs in a stream and remember its timezones, without creating events
+    public int scan(InputStream in) throws Exception {
+        ContentHandlerImpl scanner = new ContentHandlerImpl(null);
+        parse(in, scanner);
+        mTimeZones.clear();
+        mTimeZones.addAll(scanner.mTimeZones);
+        mEventCount = scanner.mEventCount;
+        return mEventCount;
+    }
+
+    // The number of events found by the last scan()
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    // Pass each VEVENT in a stream to a handler. Timezones found by the last scan()
+    // are available to the events even if they are defined after them.
+    public void build(InputStream in, EventHandler handler) throws Exception {
+        parse(in, new ContentHandlerImpl(handler));
+    }
+
+    // Parsing stops with a CancellationException if the calling thread is interrupted
+    private void parse(InputStream in, ContentHandlerImpl handler) throws Exception {
+        try {
+            mParser.parse(createReader(in), handler);
+        } catch (ParserException e) {
+            if (e.getCause() instanceof HandlerException)
+                throw (Exception) e.getCause().getCause();
+            throw e;
+        } catch (HandlerException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static UnfoldingReader createReader(InputStream in) {
+        return new UnfoldingReader(new BufferedReader(new InputStreamReader(in, UTF_8)));
+    }
+
+    private final class ContentHandlerImpl implements ContentHandler {
+        private final EventHandler mHandler;
+        private final ComponentFactory mComponentFactory = ComponentFactory.getInstance();
+        private final PropertyFactory mPropertyFactory = new PropertyFactoryRegistry();
+        private final ParameterFactory mParameterFactory = new ParameterFactoryRegistry();
+        private final TimeZoneRegistry mTzRegistry;
+        private final List<VTimeZone> mTimeZones = new ArrayList<>();
+        private int mEventCount;
+
+        private int mDepth; // Nesting level of the current component
+        private boolean mSkipping; // Whether the current top level component is unused
+        private Component mComponent;
+        private Component mSubComponent;
+        private Property mProperty;
+
+        // With a null handler, only count events and collect timezones
+        public ContentHandlerImpl(EventHandler handler) {
+            mHandler = handler;
+            mTzRegistry = TimeZoneRegistryFactory.getInstance().createRegistry();
+            if (handler != null)
+                for (VTimeZone vtz: StreamingCalendarBuilder.this.mTimeZones)
+                    mTzRegistry.register(new TimeZone(vtz));
+        }
+
+        public void startCalendar() {
+        }
+
+        public void endCalendar() {
+        }
+
+        public void startComponent(String name) {
+            if (Thread.currentThread().isInterrupted())
+                throw new HandlerException(new CancellationException());
+
+            if (mDepth++ == 0) {
+                final boolean isEvent = VEvent.VEVENT.equalsIgnoreCase(name);
+                if (isEvent)
+                    mEventCount++;
+                mSkipping = !VTimeZone.VTIMEZONE.equalsIgnoreCase(name)
+                            && (!isEvent || mHandler == null);
+            }
+
+            if (mSkipping)
+                return;
+            if (mComponent != null)
+                mSubComponent = mComponentFactory.createComponent(name);
+            else
+                mComponent = mComponentFactory.createComponent(name);
+        }
+
+        public void endComponent(String name) {
+            mDepth--;
+            if (mSkipping || mComponent == null)
+                return;
+
+            if (mSubComponent != null) {
+                if (mComponent instanceof VTimeZone)
+                    ((VTimeZone) mComponent).getObservances().add(mSubComponent);
+                else if (mComponent instanceof VEvent)
+                    ((VEvent) mComponent).getAlarms().add(mSubComponent);
+                mSubComponent = null;
+                return;
+            }
+
+            final Component component = mComponent;
+            mComponent = null;
+            if (component instanceof VTimeZone) {
+                mTimeZones.add((VTimeZone) component);
+                mTzRegistry.register(new TimeZone((VTimeZone) component));
+            } else if (component instanceof VEvent) {
+                try {
+                    mHandler.onEvent((VEvent) component);
+                } catch (Exception e) {
+                    throw new HandlerException(e);
+                }
+            }
+        }
+
+        public void startProperty(String name) {
+            if (!mSkipping)
+                mProperty = mPropertyFactory.createProperty(name.toUpperCase());
+        }
+
+        public void propertyValue(String value) throws URISyntaxException, ParseException,
+                                                      IOException {
+            if (mProperty == null)
+                return;
+            if (mProperty instanceof Escapable)
+                mProperty.setValue(Strings.unescape(value));
+            else
+                mProperty.setValue(value);
+        }
+
+        public void endProperty(String name) {
+            if (mProperty == null)
+                return;
+            final Property property = Constants.forProperty(mProperty);
+            mProperty = null;
+            if (mSubComponent != null)
+                mSubComponent.getProperties().add(property);
+            else if (mComponent != null)
+                mComponent.getProperties().add(property);
+            // Calendar level properties are not used and are dropped
+        }
+
+        public void parameter(String name, String value) throws URISyntaxException {
+            if (mProperty == null)
+                return;
+            Parameter param = mParameterFactory.createParameter(name.toUpperCase(),
+                                                                Strings.escapeNewline(value));
+            mProperty.getParameters().add(param);
+            if (param instanceof TzId && !(mProperty instanceof XProperty)) {
+                TimeZone tz = mTzRegistry.getTimeZone(param.getValue());
+                if (tz != null && mProperty instanceof DateProperty)
+                    ((DateProperty) mProperty).setTimeZone(tz);
+                else if (tz != null && mProperty instanceof DateListProperty)
+                    ((DateListProperty) mProperty).setTimeZone(tz);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.fortuna.ical4j.model.TimeZone;
+import net.fortuna.ical4j.model.TimeZoneRegistry;
+import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
+import net.fortuna.ical4j.model.ValidationException;
+import net.fortuna.ical4j.model.component.VTimeZone;
+import net.fortuna.ical4j.model.property.Method;
+
+// The timezones used by exported events, keyed by the timezone names stored in
+// the calendar provider. Each name is resolved and its VTIMEZONE validated and
+// rendered once per process, so exports only need a map lookup per date.
+//
+// Creating the registry is slow, so apps should call getInstance() in the
+// background before the first export.
+public final class TimeZoneCache {
+    private static final Logger LOG = Logger.getLogger("ICS_TimeZoneCache");
+
+    private static TimeZoneCache sInstance;
+
+    private static final Entry UTC = new Entry(null, true, null, null);
+
+    private final TimeZoneRegistry mRegistry;
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    public static final class Entry {
+        private final String mId;
+        private final boolean mIsUtc;
+        private final TimeZone mTimeZone;
+        private final String mVTimeZone;
+
+        // ical4j timezones cache their transitions without synchronisation, so
+        // each thread that converts dates gets its own copy
+        private final ThreadLocal<TimeZone> mLocalTimeZone = new ThreadLocal<TimeZone>() {
+            @Override
+            protected TimeZone initialValue() {
+                if (mTimeZone == null)
+                    return null;
+                synchronized (Entry.this) {
+                    try {
+                        return new TimeZone((VTimeZone) mTimeZone.getVTimeZone().copy());
+                    } catch (IOException | URISyntaxException | ParseException e) {
+                        LOG.log(Level.SEVERE, "Failed to copy timezone " + mId, e);
+                        return null;
+                    }
+                }
+            }
+        };
+
+        private Entry(String id, boolean isUtc, TimeZone timeZone, String vTimeZone) {
+            mId = id;
+            mIsUtc = isUtc;
+            mTimeZone = timeZone;
+            mVTimeZone = vTimeZone;
+        }
+
+        public String getId() {
+            return mId;
+        }
+
+        public boolean isUtc() {
+            return mIsUtc;
+        }
+
+        // The timezone for the calling thread to use, or null if it is UTC or unknown
+        public TimeZone getTimeZone() {
+            return mLocalTimeZone.get();
+        }
+
+        // The validated VTIMEZONE component text, or null if there is none
+        public String getVTimeZone() {
+            return mVTimeZone;
+        }
+    }
+
+    private TimeZoneCache() {
+        final long startMs = System.currentTimeMillis();
+        mRegistry = TimeZoneRegistryFactory.getInstance().createRegistry();
+        if (mRegistry == null)
+            throw new RuntimeException("Failed to create TZ registry");
+        LOG.fine("Created registry in " + (System.currentTimeMillis() - startMs) + "ms");
+    }
+
+    public static synchronized TimeZoneCache getInstance() {
+        if (sInstance == null)
+            sInstance = new TimeZoneCache();
+        return sInstance;
+    }
+
+    public static boolean isUtc(final String tz) {
+        if (tz == null || tz.length() == 0)
+            return true;
+        final String utz = tz.toUpperCase(Locale.US);
+        return utz.equals("UTC") || utz.equals("UTC-0") || utz.equals("UTC+0") || utz.endsWith("/UTC");
+    }
+
+    // Look up a timezone by name. Empty names and UTC aliases give UTC.
+    public Entry get(String tz) {
+        if (tz == null)
+            return UTC;
+        Entry entry = mEntries.get(tz);
+        if (entry == null)
+            entry = load(tz);
+        return entry;
+    }
+
+    private synchronized Entry load(String tz) {
+        Entry entry = mEntries.get(tz);
+        if (entry != null)
+            return entry; // Loaded by another thread
+
+        if (isUtc(tz))
+            entry = UTC;
+        else {
+            TimeZone t = mRegistry.getTimeZone(tz);
+            String vTimeZone = null;
+            if (t != null) {
+                VTimeZone component = t.getVTimeZone();
+                try {
+                    // Exports are always written with METHOD:PUBLISH
+                    component.validate(Method.PUBLISH);
+                    component.validate();
+                    vTimeZone = component.toString();
+                } catch (ValidationException e) {
+                    LOG.log(Level.SEVERE, "Invalid VTIMEZONE for " + tz + ", not writing it", e);
+                }
+            }
+            entry = new Entry(tz, false, t, vTimeZone);
+        }
+        mEntries.put(tz, entry);
+        return entry;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.ByteArrayOutputStream;
+
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.ValidationException;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.CalScale;
+import net.fortuna.ical4j.model.property.Method;
+import net.fortuna.ical4j.model.property.ProdId;
+import net.fortuna.ical4j.model.property.Version;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CalendarWriterTest {
+    private static PropertyList header() {
+        PropertyList header = new PropertyList();
+        header.add(new ProdId("-//Test//EN"));
+        header.add(Version.VERSION_2_0);
+        header.add(Method.PUBLISH);
+        header.add(CalScale.GREGORIAN);
+        return header;
+    }
+
+    @Test
+    public void writesHeaderAndFooter() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CalendarWriter(out, header()).close();
+
+        assertEquals("BEGIN:VCALENDAR\r\n"
+                     + "PRODID:-//Test//EN\r\n"
+                     + "VERSION:2.0\r\n"
+                     + "METHOD:PUBLISH\r\n"
+                     + "CALSCALE:GREGORIAN\r\n"
+                     + "END:VCALENDAR\r\n", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void writesComponentsBetweenHeaderAndFooter() throws Exception {
+        VEvent e = TestCalendars.parseEvent(
+            "BEGIN:VEVENT",
+            "UID:a@example.com",
+            "DTSTAMP:20260101T000000Z",
+            "DTSTART:20260101T120000Z",
+            "ORGANIZER:mailto:organizer@example.com",
+            "SUMMARY:Event",
+            "END:VEVENT");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CalendarWriter writer = new CalendarWriter(out, header());
+        writer.write(e);
+        writer.writeValidated(writer.format(e));
+        assertEquals(2, writer.getNumComponents());
+        writer.close();
+
+        String text = out.toString("UTF-8");
+        assertTrue(text.startsWith("BEGIN:VCALENDAR\r\nPRODID:-//Test//EN\r\n"));
+        assertTrue(text.contains("CALSCALE:GREGORIAN\r\nBEGIN:VEVENT\r\nUID:a@example.com\r\n"));
+        assertTrue(text.endsWith("SUMMARY:Event\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n"));
+        assertEquals(2, TestCalendars.parse(text).size());
+    }
+
+    @Test
+    public void rejectsHeaderWithoutProdId() throws Exception {
+        PropertyList header = new PropertyList();
+        header.add(Version.VERSION_2_0);
+        try {
+            new CalendarWriter(new ByteArrayOutputStream(), header);
+            fail("Expected a ValidationException");
+        } catch (ValidationException expected) {
+        }
+    }
+}
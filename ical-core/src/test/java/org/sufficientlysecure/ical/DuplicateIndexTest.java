@@ -0,0 +1,116 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateIndexTest {
+    private static EventValues event(long calendarId, String uid, Long start, String title) {
+        EventValues values = new EventValues();
+        values.put(EventColumns.CALENDAR_ID, calendarId);
+        if (uid != null)
+            values.put(EventColumns.UID_2445, uid);
+        if (start != null)
+            values.put(EventColumns.DTSTART, start);
+        if (title != null)
+            values.put(EventColumns.TITLE, title);
+        return values;
+    }
+
+    @Test
+    public void matchesUidsPerCalendar() {
+        DuplicateIndex index = new DuplicateIndex(true, false);
+        DuplicateIndex.Entry added = index.add(10, event(1, "a", 1000L, "Title"));
+
+        List<DuplicateIndex.Entry> found = index.find(event(1, "a", 2000L, "Other"));
+        assertEquals(1, found.size());
+        assertSame(added, found.get(0));
+        assertEquals(10, found.get(0).mId);
+        assertTrue(index.find(event(2, "a", 1000L, "Title")).isEmpty());
+        assertTrue(index.find(event(1, "b", 1000L, "Title")).isEmpty());
+    }
+
+    @Test
+    public void matchesGlobalUidsInAnyCalendar() {
+        DuplicateIndex index = new DuplicateIndex(true, true);
+        index.add(10, event(1, "a", 1000L, "Title"));
+        index.add(1, 20, "a", 1000L, "Title"); // Loaded from a store
+
+        List<DuplicateIndex.Entry> found = index.find(event(2, "a", null, null));
+        assertEquals(2, found.size());
+        assertEquals(1, found.get(0).mCalendarId);
+        assertEquals(1, found.get(1).mCalendarId);
+        assertTrue(index.find(event(2, "b", 1000L, "Title")).isEmpty());
+    }
+
+    @Test
+    public void matchesStartAndTitleWithoutUids() {
+        DuplicateIndex index = new DuplicateIndex(false, false);
+        index.add(10, event(1, "a", 1000L, "Title"));
+        index.add(11, event(1, null, 1000L, null));
+
+        assertEquals(10, index.find(event(1, "b", 1000L, "Title")).get(0).mId);
+        assertEquals(11, index.find(event(1, null, 1000L, null)).get(0).mId);
+        assertTrue(index.find(event(1, null, 1000L, "")).isEmpty());
+        assertTrue(index.find(event(1, null, 1000L, "Other")).isEmpty());
+        assertTrue(index.find(event(1, null, 2000L, "Title")).isEmpty());
+        assertTrue(index.find(event(2, null, 1000L, "Title")).isEmpty());
+        assertTrue(index.find(event(1, null, null, "Title")).isEmpty());
+    }
+
+    @Test
+    public void eventsWithoutUidsMatchStartAndTitle() {
+        DuplicateIndex index = new DuplicateIndex(true, false);
+        index.add(10, event(1, null, 1000L, "Title"));
+
+        assertEquals(10, index.find(event(1, null, 1000L, "Title")).get(0).mId);
+        assertTrue(index.find(event(1, "a", 1000L, "Title")).isEmpty());
+    }
+
+    @Test
+    public void removesPendingEvents() {
+        DuplicateIndex index = new DuplicateIndex(true, false);
+        DuplicateIndex.Entry pending = index.add(DuplicateIndex.NO_ID, event(1, "a", 1000L, null));
+        assertEquals(1, index.size());
+        assertEquals(DuplicateIndex.NO_ID, index.find(event(1, "a", null, null)).get(0).mId);
+
+        index.remove(pending);
+        assertEquals(0, index.size());
+        assertTrue(index.find(event(1, "a", null, null)).isEmpty());
+    }
+
+    @Test
+    public void updatesKeysOfUpdatedEvents() {
+        DuplicateIndex index = new DuplicateIndex(false, false);
+        DuplicateIndex.Entry entry = index.add(2, 10, null, 1000L, "Title");
+
+        // Updating keeps the event in its own calendar
+        DuplicateIndex.Entry updated = index.update(entry, event(1, null, 2000L, "Other"));
+        assertEquals(1, index.size());
+        assertEquals(2, updated.mCalendarId);
+        assertEquals(10, updated.mId);
+        assertTrue(index.find(event(2, null, 1000L, "Title")).isEmpty());
+        assertSame(updated, index.find(event(2, null, 2000L, "Other")).get(0));
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Parameter;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.VAlarm;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.DtStamp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// Converts events to rows in a MemoryEventStore and back, as importing an
+// event and exporting it again does
+public class EventConverterTest {
+    private final EventConverter mConverter = new EventConverter(TimeZoneCache.getInstance());
+    private final MemoryEventStore mStore = new MemoryEventStore();
+
+    private EventValues toValues(VEvent e, List<Integer> reminders) {
+        EventValues values = mConverter.toValues(e, reminders);
+        assertNotNull(values);
+        values.put(EventColumns.CALENDAR_ID, 1L);
+        return values;
+    }
+
+    // Insert converted values into the store and convert them back, adding the
+    // timezones of the event to timeZones
+    private VEvent export(EventValues values, List<Integer> reminders,
+                          final List<TimeZoneCache.Entry> timeZones) throws Exception {
+        final long id = mStore.insertEvent(values, reminders);
+        final List<VEvent> exported = new ArrayList<>();
+        mStore.readEvents(new EventStore.Visitor() {
+            public void onStart(int numEvents) {
+            }
+
+            public void onEvent(EventRow event, List<EventRow> reminders) {
+                if (event.getLong(EventColumns._ID) == id)
+                    exported.add(mConverter.toVEvent(event, reminders, timeZones,
+                                                     new DtStamp()));
+            }
+        });
+        assertEquals(1, exported.size());
+        assertNotNull(exported.get(0));
+        return exported.get(0);
+    }
+
+    private static String value(VEvent e, String name) {
+        Property p = e.getProperty(name);
+        return p == null ? null : p.getValue();
+    }
+
+    @Test
+    public void timedEventRoundTrips() throws Exception {
+        VEvent e = TestCalendars.parseEvent(
+            "BEGIN:VEVENT",
+            "UID:timed@example.com",
+            "DTSTAMP:20260101T000000Z",
+            "DTSTART;TZID=Europe/London:20260701T090000",
+            "DTEND;TZID=Europe/London:20260701T100000",
+            "SUMMARY:Meeting",
+            "DESCRIPTION:Weekly catch up",
+            "LOCATION:Room 1",
+            "ORGANIZER:mailto:organizer@example.com",
+            "STATUS:CONFIRMED",
+            "CLASS:PRIVATE",
+            "BEGIN:VALARM",
+            "TRIGGER:-PT15M",
+            "ACTION:DISPLAY",
+            "DESCRIPTION:Reminder",
+            "END:VALARM",
+            "END:VEVENT");
+
+        List<Integer> reminders = new ArrayList<>();
+        EventValues values = toValues(e, reminders);
+        assertEquals(Arrays.asList(15), reminders);
+        assertEquals("Meeting", values.getString(EventColumns.TITLE));
+        assertEquals("organizer@example.com", values.getString(EventColumns.ORGANIZER));
+        assertEquals(1782892800000L, values.getLong(EventColumns.DTSTART));
+        assertEquals(1782896400000L, values.getLong(EventColumns.DTEND));
+        assertEquals("Europe/London", values.getString(EventColumns.EVENT_TIMEZONE));
+        assertEquals(EventColumns.STATUS_CONFIRMED, values.getInt(EventColumns.STATUS));
+        assertEquals(EventColumns.ACCESS_PRIVATE, values.getInt(EventColumns.ACCESS_LEVEL));
+        assertEquals(EventColumns.AVAILABILITY_BUSY, values.getInt(EventColumns.AVAILABILITY));
+
+        List<TimeZoneCache.Entry> timeZones = new ArrayList<>();
+        VEvent out = export(values, reminders, timeZones);
+        assertEquals("timed@example.com", value(out, Property.UID));
+        assertEquals("Meeting", value(out, Property.SUMMARY));
+        assertEquals("Weekly catch up", value(out, Property.DESCRIPTION));
+        assertEquals("Room 1", value(out, Property.LOCATION));
+        assertEquals("mailto:organizer@example.com", value(out, Property.ORGANIZER));
+        assertEquals("CONFIRMED", value(out, Property.STATUS));
+        assertEquals("PRIVATE", value(out, Property.CLASS));
+        assertEquals(1782892800000L, out.getStartDate().getDate().getTime());
+        assertEquals(1782896400000L, out.getEndDate().getDate().getTime());
+        assertEquals("Europe/London",
+                     out.getStartDate().getParameter(Parameter.TZID).getValue());
+        assertEquals("20260701T090000", out.getStartDate().getValue());
+        assertEquals(1, out.getAlarms().size());
+        assertEquals("-PT15M", ((VAlarm) out.getAlarms().get(0)).getTrigger().getValue());
+
+        assertFalse(timeZones.isEmpty());
+        for (TimeZoneCache.Entry tz: timeZones)
+            assertEquals("Europe/London", tz.getId());
+        assertTrue(timeZones.get(0).getVTimeZone().startsWith("BEGIN:VTIMEZONE"));
+    }
+
+    @Test
+    public void recurringEventKeepsDuration() throws Exception {
+        VEvent e = TestCalendars.parseEvent(
+            "BEGIN:VEVENT",
+            "UID:recurring@example.com",
+            "DTSTAMP:20260101T000000Z",
+            "DTSTART:20260105T140000Z",
+            "DTEND:20260105T150000Z",
+            "RRULE:FREQ=WEEKLY;COUNT=5",
+            "SUMMARY:Standup",
+            "END:VEVENT");
+
+        List<Integer> reminders = new ArrayList<>();
+        EventValues values = toValues(e, reminders);
+        assertEquals("PT1H", values.getString(EventColumns.DURATION));
+        assertFalse(values.containsKey(EventColumns.DTEND));
+        assertEquals("UTC", values.getString(EventColumns.EVENT_TIMEZONE));
+
+        VEvent out = export(values, reminders, new ArrayList<TimeZoneCache.Entry>());
+        assertEquals(1767621600000L, out.getStartDate().getDate().getTime());
+        assertTrue(((DateTime) out.getStartDate().getDate()).isUtc());
+        assertEquals("PT1H", value(out, Property.DURATION));
+        assertNull(out.getProperty(Property.DTEND));
+        assertEquals("FREQ=WEEKLY;COUNT=5", value(out, Property.RRULE));
+    }
+
+    @Test
+    public void allDayEventRoundTrips() throws Exception {
+        VEvent e = TestCalendars.parseEvent(
+            "BEGIN:VEVENT",
+            "UID:allday@example.com",
+            "DTSTAMP:20260101T000000Z",
+            "DTSTART;VALUE=DATE:20260310",
+            "DTEND;VALUE=DATE:20260311",
+            "SUMMARY:Holiday",
+            "TRANSP:TRANSPARENT",
+            "END:VEVENT");
+
+        List<Integer> reminders = new ArrayList<>();
+        EventValues values = toValues(e, reminders);
+        assertEquals(1, values.getInt(EventColumns.ALL_DAY));
+        assertEquals(1773100800000L, values.getLong(EventColumns.DTSTART));
+        assertEquals(EventColumns.AVAILABILITY_FREE, values.getInt(EventColumns.AVAILABILITY));
+
+        VEvent out = export(values, reminders, new ArrayList<TimeZoneCache.Entry>());
+        assertFalse(out.getStartDate().getDate() instanceof DateTime);
+        assertEquals("20260310", out.getStartDate().getValue());
+        assertEquals("20260311", out.getEndDate().getValue());
+        assertNull(out.getProperty(Property.TRANSP)); // Transparent by default
+    }
+
+    @Test
+    public void eventWithoutEndLastsNoTime() throws Exception {
+        VEvent e = TestCalendars.parseEvent(
+            "BEGIN:VEVENT",
+            "UID:instant@example.com",
+            "DTSTAMP:20260101T000000Z",
+            "DTSTART:20260105T140000Z",
+            "SUMMARY:Deadline",
+            "END:VEVENT");
+
+        List<Integer> reminders = new ArrayList<>();
+        EventValues values = toValues(e, reminders);
+        assertEquals(values.getLong(EventColumns.DTSTART), values.getLong(EventColumns.DTEND));
+        assertEquals(EventColumns.AVAILABILITY_FREE, values.getInt(EventColumns.AVAILABILITY));
+
+        VEvent out = export(values, reminders, new ArrayList<TimeZoneCache.Entry>());
+        assertNull(out.getProperty(Property.DTEND));
+        assertNull(out.getProperty(Property.DURATION));
+    }
+
+    @Test
+    public void editedInstancesAreSkipped() throws Exception {
+        VEvent e = TestCalendars.parseEvent(
+            "BEGIN:VEVENT",
+            "UID:recurring@example.com",
+            "DTSTAMP:20260101T000000Z",
+            "RECURRENCE-ID:20260112T140000Z",
+            "DTSTART:20260112T150000Z",
+            "DTEND:20260112T160000Z",
+            "END:VEVENT");
+
+        assertNull(mConverter.toValues(e, new ArrayList<Integer>()));
+
+        EventValues row = new EventValues();
+        row.put(EventColumns.ORIGINAL_ID, 1L);
+        assertNull(mConverter.toVEvent(row, new ArrayList<EventRow>(),
+                                       new ArrayList<TimeZoneCache.Entry>(), new DtStamp()));
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventPipelineTest {
+    private static final int CAPACITY = 256;
+    private static final int NUM_EVENTS = 20000;
+    private static final long TIMEOUT_MS = 10000;
+
+    // Reads a large calendar into a pipeline as CalendarImporter does, parsing
+    // and converting each event
+    private static final class Reader extends Thread {
+        private final EventPipeline<EventValues> mPipeline;
+        private final byte[] mCalendar;
+        final AtomicInteger mNumRead = new AtomicInteger();
+        final AtomicReference<Exception> mError = new AtomicReference<>();
+
+        Reader(EventPipeline<EventValues> pipeline, byte[] calendar) {
+            mPipeline = pipeline;
+            mCalendar = calendar;
+        }
+
+        @Override
+        public void run() {
+            final EventConverter converter = new EventConverter(TimeZoneCache.getInstance());
+            try {
+                new StreamingCalendarBuilder().build(new ByteArrayInputStream(mCalendar),
+                    new StreamingCalendarBuilder.EventHandler() {
+                        public void onEvent(VEvent e) throws InterruptedException {
+                            mPipeline.put(converter.toValues(e, new ArrayList<Integer>()));
+                            mNumRead.incrementAndGet();
+                        }
+                    });
+            } catch (Exception e) {
+                mError.set(e);
+            } finally {
+                mPipeline.finish();
+            }
+        }
+    }
+
+    private static byte[] createCalendar(int numEvents) throws Exception {
+        StringBuilder sb = new StringBuilder("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n"
+                                             + "PRODID:-//Test//EN\r\n");
+        for (int i = 0; i < numEvents; i++)
+            sb.append("BEGIN:VEVENT\r\nUID:").append(i).append("@example.com\r\n")
+              .append("DTSTAMP:20260101T000000Z\r\nDTSTART:20260102T100000Z\r\n")
+              .append("DTEND:20260102T110000Z\r\nSUMMARY:Event ").append(i)
+              .append("\r\nEND:VEVENT\r\n");
+        return sb.append("END:VCALENDAR\r\n").toString().getBytes("UTF-8");
+    }
+
+    @Test(timeout = 30000)
+    public void passesAllEventsInOrder() throws Exception {
+        EventPipeline<EventValues> pipeline = new EventPipeline<>(CAPACITY);
+        Reader reader = new Reader(pipeline, createCalendar(1000));
+        reader.start();
+
+        MemoryEventStore store = new MemoryEventStore();
+        EventValues event;
+        while ((event = pipeline.take()) != null) {
+            assertEquals(store.size() + "@example.com", event.getString(EventColumns.UID_2445));
+            store.insertEvent(event, new ArrayList<Integer>());
+        }
+        pipeline.close();
+        reader.join(TIMEOUT_MS);
+
+        assertFalse(reader.isAlive());
+        assertNull(reader.mError.get());
+        assertEquals(1000, store.size());
+    }
+
+    // The writer cancels a large import while the reader is waiting for space,
+    // as CalendarImporter.processAll() does when the task is cancelled
+    @Test(timeout = 30000)
+    public void cancellingLargeImportStopsReader() throws Exception {
+        EventPipeline<EventValues> pipeline = new EventPipeline<>(CAPACITY);
+        Reader reader = new Reader(pipeline, createCalendar(NUM_EVENTS));
+        reader.start();
+
+        for (int i = 0; i < 500; i++)
+            pipeline.take();
+        waitUntilFull(reader, 500);
+        pipeline.close();
+        reader.interrupt();
+        reader.join(TIMEOUT_MS);
+
+        assertFalse("reader still waiting after cancel", reader.isAlive());
+        assertTrue(reader.mNumRead.get() < NUM_EVENTS);
+        assertTrue(reader.mError.get() instanceof CancellationException
+                   || reader.mError.get() instanceof InterruptedException);
+    }
+
+    // The writer fails without interrupting the reader
+    @Test(timeout = 30000)
+    public void failedWriterStopsReader() throws Exception {
+        EventPipeline<EventValues> pipeline = new EventPipeline<>(CAPACITY);
+        Reader reader = new Reader(pipeline, createCalendar(NUM_EVENTS));
+        reader.start();
+
+        for (int i = 0; i < 10; i++)
+            pipeline.take();
+        waitUntilFull(reader, 10);
+        pipeline.close();
+        reader.join(TIMEOUT_MS);
+
+        assertFalse("reader still waiting after writer failed", reader.isAlive());
+        assertTrue(reader.mError.get() instanceof CancellationException);
+    }
+
+    // An interrupted reader still marks the end, so the writer doesn't wait forever
+    @Test(timeout = 30000)
+    public void interruptedReaderEndsEvents() throws Exception {
+        final EventPipeline<EventValues> pipeline = new EventPipeline<>(CAPACITY);
+        Reader reader = new Reader(pipeline, createCalendar(NUM_EVENTS));
+        reader.start();
+        waitUntilFull(reader, 0);
+        reader.interrupt();
+
+        List<EventValues> taken = new ArrayList<>();
+        EventValues event;
+        while ((event = pipeline.take()) != null)
+            taken.add(event);
+        pipeline.close();
+        reader.join(TIMEOUT_MS);
+
+        assertFalse(reader.isAlive());
+        assertEquals(reader.mNumRead.get(), taken.size());
+        assertTrue(taken.size() < NUM_EVENTS);
+    }
+
+    // Wait until the reader has filled the pipeline and is waiting for space
+    private static void waitUntilFull(Reader reader, int numTaken) throws Exception {
+        final long endMs = System.currentTimeMillis() + TIMEOUT_MS;
+        while (reader.mNumRead.get() < numTaken + CAPACITY
+               || reader.getState() != Thread.State.WAITING) {
+            assertTrue("reader never filled the pipeline", System.currentTimeMillis() < endMs);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.fortuna.ical4j.model.component.VAlarm;
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class StreamingCalendarBuilderTest {
+    @Test
+    public void resolvesTimezoneDefinedAfterEvent() throws Exception {
+        String calendar = TestCalendars.calendar(
+            "BEGIN:VEVENT",
+            "UID:a@example.com",
+            "DTSTAMP:20260101T000000Z",
+            "DTSTART;TZID=Test/Zone:20260101T120000",
+            "DTEND;TZID=Test/Zone:20260101T130000",
+            "END:VEVENT",
+            "BEGIN:VTIMEZONE",
+            "TZID:Test/Zone",
+            "BEGIN:STANDARD",
+            "DTSTART:19700101T000000",
+            "TZOFFSETFROM:+0530",
+            "TZOFFSETTO:+0530",
+            "END:STANDARD",
+            "END:VTIMEZONE");
+
+        StreamingCalendarBuilder builder = new StreamingCalendarBuilder();
+        assertEquals(1, builder.scan(TestCalendars.stream(calendar)));
+        assertEquals(1, builder.getEventCount());
+
+        List<VEvent> events = TestCalendars.parse(calendar);
+        assertEquals(1, events.size());
+        VEvent e = events.get(0);
+        assertEquals("Test/Zone", e.getStartDate().getTimeZone().getID());
+        assertEquals(1767249000000L, e.getStartDate().getDate().getTime()); // 06:30 UTC
+        assertEquals(1767252600000L, e.getEndDate().getDate().getTime());
+    }
+
+    @Test
+    public void buildsEventsInOrderWithAlarms() throws Exception {
+        List<VEvent> events = TestCalendars.parse(TestCalendars.calendar(
+            "BEGIN:VEVENT",
+            "UID:1",
+            "DTSTART:20260101T120000Z",
+            "END:VEVENT",
+            "BEGIN:VTODO",
+            "UID:todo",
+            "END:VTODO",
+            "BEGIN:VEVENT",
+            "UID:2",
+            "DTSTART:20260102T120000Z",
+            "BEGIN:VALARM",
+            "TRIGGER:-PT10M",
+            "ACTION:DISPLAY",
+            "DESCRIPTION:Reminder",
+            "END:VALARM",
+            "END:VEVENT"));
+
+        assertEquals(2, events.size());
+        assertEquals("1", events.get(0).getUid().getValue());
+        assertEquals("2", events.get(1).getUid().getValue());
+        assertEquals(0, events.get(0).getAlarms().size());
+        assertEquals(1, events.get(1).getAlarms().size());
+        assertEquals("-PT10M", ((VAlarm) events.get(1).getAlarms().get(0)).getTrigger().getValue());
+    }
+
+    @Test
+    public void rethrowsHandlerExceptions() throws Exception {
+        final IOException error = new IOException("Failed to write");
+        String calendar = TestCalendars.calendar(
+            "BEGIN:VEVENT", "UID:1", "DTSTART:20260101T120000Z", "END:VEVENT");
+        try {
+            new StreamingCalendarBuilder().build(TestCalendars.stream(calendar),
+                new StreamingCalendarBuilder.EventHandler() {
+                    public void onEvent(VEvent e) throws IOException {
+                        throw error;
+                    }
+                });
+            fail("Expected the handler's exception");
+        } catch (IOException e) {
+            assertSame(error, e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ *  Copyright (C) 2026  Calendar Import/Export contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sufficientlysecure.ical;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.fortuna.ical4j.model.component.VEvent;
+
+// Builds calendars for tests from their lines
+final class TestCalendars {
+    private TestCalendars() {
+    }
+
+    // A calendar containing the given lines between its header and footer
+    static String calendar(String... lines) {
+        StringBuilder sb = new StringBuilder("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n"
+                                             + "PRODID:-//Test//EN\r\n");
+        for (String line: lines)
+            sb.append(line).append("\r\n");
+        return sb.append("END:VCALENDAR\r\n").toString();
+    }
+
+    static InputStream stream(String calendar) throws Exception {
+        return new ByteArrayInputStream(calendar.getBytes("UTF-8"));
+    }
+
+    // Parse the events of a calendar as an import does
+    static List<VEvent> parse(String calendar) throws Exception {
+        final List<VEvent> events = new ArrayList<>();
+        StreamingCalendarBuilder builder = new StreamingCalendarBuilder();
+        builder.scan(stream(calendar));
+        builder.build(stream(calendar), new StreamingCalendarBuilder.EventHandler() {
+            public void onEvent(VEvent e) {
+                events.add(e);
+            }
+        });
+        return events;
+    }
+
+    static VEvent parseEvent(String... lines) throws Exception {
+        List<VEvent> events = parse(calendar(lines));
+        if (events.size() != 1)
+            throw new IllegalArgumentException("Expected one event, got " + events.size());
+        return events.get(0);
+    }
+}